@@ -18,6 +18,7 @@ import org.springframework.cloud.stream.messaging.Source;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.FilterType;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 import tk.mybatis.spring.annotation.MapperScan;
 
@@ -29,6 +30,7 @@ import java.util.Collections;
  * @EnableFeignClients 开启 Feign 的支撑
  * @EnableFeignClients(defaultConfiguration = GlobalFeignConfiguration.class) 开启 Feign 的支撑同时配置全局配置测试
  * @EnableBinding(Source.class) 实现 Spring Cloud Stream 【发送】消息注解
+ * @EnableScheduling 开启定时任务(热点分享刷新等)
  */
 //@ComponentScan(excludeFilters = {@ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = {MyConfig.class})})
 @ComponentScan(excludeFilters = @ComponentScan.Filter(type = FilterType.ANNOTATION, classes = ScanIgnore.class))
@@ -37,6 +39,7 @@ import java.util.Collections;
 @EnableDiscoveryClient
 @EnableFeignClients//(defaultConfiguration = GlobalFeignConfiguration.class)
 @EnableBinding({Source.class, MySource.class, MyMqSource.class, MyTagsSource.class})
+@EnableScheduling
 public class ContentCenterApplication {
 
     public static void main(String[] args) {
@@ -1,5 +1,8 @@
 package com.itmuch.contentcenter.auth;
 
+import com.itmuch.contentcenter.exception.MessagePublishBusyException;
+import com.itmuch.contentcenter.exception.ShareExchangeBusyException;
+import com.itmuch.contentcenter.exception.ShareNotFoundException;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -26,6 +29,43 @@ public class GlobalExceptionErrorHandler {
         );
     }
 
+    @ExceptionHandler(ShareNotFoundException.class)
+    public ResponseEntity<ErrorBody> error(ShareNotFoundException e) {
+        // 不存在的id可能被大量扫描，不打印异常栈
+        log.debug("分享不存在：{}", e.getMessage());
+        return new ResponseEntity<>(
+                ErrorBody.builder()
+                        .body(e.getMessage())
+                        .status(HttpStatus.NOT_FOUND.value())
+                        .build(),
+                HttpStatus.NOT_FOUND
+        );
+    }
+
+    @ExceptionHandler(ShareExchangeBusyException.class)
+    public ResponseEntity<ErrorBody> error(ShareExchangeBusyException e) {
+        log.warn("兑换排队已满");
+        return new ResponseEntity<>(
+                ErrorBody.builder()
+                        .body(e.getMessage())
+                        .status(HttpStatus.TOO_MANY_REQUESTS.value())
+                        .build(),
+                HttpStatus.TOO_MANY_REQUESTS
+        );
+    }
+
+    @ExceptionHandler(MessagePublishBusyException.class)
+    public ResponseEntity<ErrorBody> error(MessagePublishBusyException e) {
+        log.warn(e.getMessage());
+        return new ResponseEntity<>(
+                ErrorBody.builder()
+                        .body(e.getMessage())
+                        .status(HttpStatus.TOO_MANY_REQUESTS.value())
+                        .build(),
+                HttpStatus.TOO_MANY_REQUESTS
+        );
+    }
+
 }
 
 @Data
@@ -0,0 +1,79 @@
+package com.itmuch.contentcenter.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 线程安全的 count-min sketch，用固定内存估算每个 key 的出现次数
+ *  估算值只会偏大不会偏小，误差上界 e / width * total，超出上界的概率不超过 e^-depth
+ */
+public class CountMinSketch {
+
+    private final int width;
+
+    private final int depth;
+
+    private final AtomicLongArray counters;
+
+    private final AtomicLong total = new AtomicLong();
+
+    public CountMinSketch(int width, int depth) {
+        this.width = width;
+        this.depth = depth;
+        this.counters = new AtomicLongArray(width * depth);
+    }
+
+    /**
+     * 计数 +1 并返回新的估算值
+     * @param key
+     * @return
+     */
+    public long addAndEstimate(int key) {
+        this.total.incrementAndGet();
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < this.depth; row++) {
+            min = Math.min(min, this.counters.incrementAndGet(this.index(row, key)));
+        }
+        return min;
+    }
+
+    public long estimate(int key) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < this.depth; row++) {
+            min = Math.min(min, this.counters.get(this.index(row, key)));
+        }
+        return min;
+    }
+
+    public long total() {
+        return this.total.get();
+    }
+
+    /**
+     * 单个估算值的误差上界
+     * @return
+     */
+    public double errorBound() {
+        return Math.E / this.width * this.total();
+    }
+
+    /**
+     * 估算值不超过误差上界的置信度
+     * @return
+     */
+    public double confidence() {
+        return 1 - Math.exp(-this.depth);
+    }
+
+    private int index(int row, int key) {
+        // 每一行用不同的种子做一次整数哈希(murmur3 finalizer)
+        int h = key * 0x9E3779B9 + row * 0x85EBCA6B;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return row * this.width + (h & Integer.MAX_VALUE) % this.width;
+    }
+
+}
@@ -0,0 +1,149 @@
+package com.itmuch.contentcenter.cache;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 热点分享识别
+ *  用两个 count-min sketch 组成滑动窗口(当前窗口 + 上一个窗口)统计分享详情的访问次数，
+ *  再维护一个 top-K 候选集，得到最近访问最多的分享id
+ */
+@Component
+public class HotShareDetector {
+
+    private final ShareCacheProperties properties;
+
+    private volatile CountMinSketch current;
+
+    private volatile CountMinSketch previous;
+
+    /**
+     * top-K 候选：分享id -> 估算次数，受 this 锁保护
+     */
+    private final Map<Integer, Long> topK = new HashMap<>();
+
+    /**
+     * 进入 top-K 的最小次数，无锁读取用于快速过滤
+     */
+    private volatile long admissionThreshold;
+
+    public HotShareDetector(ShareCacheProperties properties) {
+        this.properties = properties;
+        this.current = this.newSketch();
+        this.previous = this.newSketch();
+        this.admissionThreshold = properties.getHotMinCount();
+    }
+
+    /**
+     * 记录一次访问
+     * @param shareId
+     */
+    public void record(Integer shareId) {
+        long count = this.current.addAndEstimate(shareId) + this.previous.estimate(shareId);
+        if (count < this.admissionThreshold) {
+            return;
+        }
+        synchronized (this) {
+            this.topK.put(shareId, count);
+            if (this.topK.size() > this.properties.getHotTopK()) {
+                Integer coldest = this.coldest();
+                this.topK.remove(coldest);
+            }
+            this.updateAdmissionThreshold();
+        }
+    }
+
+    /**
+     * 当前热点分享id，按访问次数倒序
+     * @return
+     */
+    public synchronized List<Integer> hotShareIds() {
+        return this.topK.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Long>comparingByValue().reversed())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 热点分享及估算次数，按次数倒序
+     * @return
+     */
+    public synchronized Map<Integer, Long> hotShares() {
+        Map<Integer, Long> result = new LinkedHashMap<>();
+        this.topK.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Long>comparingByValue().reversed())
+                .forEach(entry -> result.put(entry.getKey(), entry.getValue()));
+        return result;
+    }
+
+    /**
+     * 估算次数的误差上界(两个窗口之和)
+     * @return
+     */
+    public double errorBound() {
+        return this.current.errorBound() + this.previous.errorBound();
+    }
+
+    public double confidence() {
+        return this.current.confidence();
+    }
+
+    public long windowTotal() {
+        return this.current.total() + this.previous.total();
+    }
+
+    /**
+     * 滑动窗口：丢弃上一个窗口，当前窗口变成上一个窗口
+     */
+    @Scheduled(fixedRateString = "#{@shareCacheProperties.hotWindowSeconds * 1000}")
+    public void rotate() {
+        CountMinSketch sketch = this.newSketch();
+        synchronized (this) {
+            this.previous = this.current;
+            this.current = sketch;
+
+            // 用新窗口重新估算候选，低于热点门槛的移出
+            List<Integer> ids = new ArrayList<>(this.topK.keySet());
+            for (Integer id : ids) {
+                long count = this.previous.estimate(id);
+                if (count < this.properties.getHotMinCount()) {
+                    this.topK.remove(id);
+                } else {
+                    this.topK.put(id, count);
+                }
+            }
+            this.updateAdmissionThreshold();
+        }
+    }
+
+    private Integer coldest() {
+        return this.topK.entrySet().stream()
+                .min(Comparator.comparing(Map.Entry::getValue))
+                .map(Map.Entry::getKey)
+                .orElse(null);
+    }
+
+    /**
+     * top-K 满了以后，只有超过最冷候选的才可能进入
+     */
+    private void updateAdmissionThreshold() {
+        long threshold = this.properties.getHotMinCount();
+        if (this.topK.size() >= this.properties.getHotTopK()) {
+            threshold = Math.max(threshold, this.topK.get(this.coldest()));
+        }
+        this.admissionThreshold = threshold;
+    }
+
+    private CountMinSketch newSketch() {
+        return new CountMinSketch(this.properties.getHotSketchWidth(), this.properties.getHotSketchDepth());
+    }
+
+}
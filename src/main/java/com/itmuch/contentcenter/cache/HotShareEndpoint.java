@@ -0,0 +1,36 @@
+package com.itmuch.contentcenter.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 热点分享 top-K 及估算误差
+ *  /actuator/hotshares
+ */
+@Component
+@Endpoint(id = "hotshares")
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class HotShareEndpoint {
+
+    private final HotShareDetector hotShareDetector;
+
+    private final ShareCache shareCache;
+
+    @ReadOperation
+    public Map<String, Object> hotShares() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("topK", this.hotShareDetector.hotShares());
+        result.put("pinned", this.shareCache.pinnedIds());
+        result.put("windowTotal", this.hotShareDetector.windowTotal());
+        result.put("errorBound", this.hotShareDetector.errorBound());
+        result.put("confidence", this.hotShareDetector.confidence());
+        return result;
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.itmuch.contentcenter.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 二级缓存的本地内存替身
+ *  用于没有共享缓存服务的开发、测试环境
+ *  按条数淘汰，每个条目按写入时给定的 ttl 过期
+ */
+public class LocalSharedCacheTier<K, V> implements SharedCacheTier<K, V> {
+
+    private final Cache<K, Entry<V>> store;
+
+    public LocalSharedCacheTier(long maximumSize) {
+        this.store = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<K, Entry<V>>() {
+                    @Override
+                    public long expireAfterCreate(K key, Entry<V> entry, long currentTime) {
+                        return entry.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(K key, Entry<V> entry, long currentTime, long currentDuration) {
+                        return entry.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterRead(K key, Entry<V> entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    @Override
+    public V get(K key) {
+        Entry<V> entry = this.store.getIfPresent(key);
+        return entry == null ? null : entry.value;
+    }
+
+    @Override
+    public void put(K key, V value, long ttlSeconds) {
+        this.store.put(key, new Entry<>(value, TimeUnit.SECONDS.toNanos(ttlSeconds)));
+    }
+
+    @Override
+    public void evict(K key) {
+        this.store.invalidate(key);
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long ttlNanos;
+
+        private Entry(V value, long ttlNanos) {
+            this.value = value;
+            this.ttlNanos = ttlNanos;
+        }
+    }
+
+}
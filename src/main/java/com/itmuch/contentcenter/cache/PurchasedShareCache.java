@@ -0,0 +1,101 @@
+package com.itmuch.contentcenter.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.itmuch.contentcenter.dao.content.MidUserShareMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户已兑换分享的位图缓存
+ *  每个用户一个 RoaringBitmap(压缩的整数集合)，第一次访问时从 mid_user_share 加载
+ *  按用户数淘汰最近最少使用的用户
+ *
+ * 位图加载后不再修改，兑换成功时复制一份再替换(写时复制)，读取不需要加锁
+ *
+ * 其他实例的兑换只有位图过期后才能感知，所以位图中"已兑换"是准确的，"未兑换"只是提示：
+ * 只用于兑换前的快速判断(命中直接返回)，分页列表直接用一次集合查询(selectPurchasedShareIds)，不走位图
+ */
+@Component
+public class PurchasedShareCache {
+
+    private static final String CACHE_NAME = "purchasedShare";
+
+    private final LoadingCache<Integer, RoaringBitmap> cache;
+
+    public PurchasedShareCache(MidUserShareMapper midUserShareMapper,
+                               ShareCacheProperties properties,
+                               MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getPurchasedMaximumUsers())
+                .expireAfterWrite(properties.getPurchasedExpireAfterWriteSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build(userId -> {
+                    RoaringBitmap bitmap = new RoaringBitmap();
+                    midUserShareMapper.selectShareIdsByUserId(userId).forEach(bitmap::add);
+                    bitmap.runOptimize();
+                    return bitmap;
+                });
+        CaffeineCacheMetrics.monitor(meterRegistry, this.cache, CACHE_NAME);
+    }
+
+    /**
+     * 用户是否兑换过该分享，只查位图，返回 false 时可能是其他实例刚兑换的
+     * @param userId
+     * @param shareId
+     * @return
+     */
+    public boolean isPurchased(Integer userId, Integer shareId) {
+        return this.cache.get(userId).contains(shareId);
+    }
+
+    /**
+     * 兑换成功后更新位图，用户不在缓存中时不处理，下次访问会重新加载
+     * @param userId
+     * @param shareId
+     */
+    public void markPurchased(Integer userId, Integer shareId) {
+        this.cache.asMap().computeIfPresent(userId, (key, bitmap) -> {
+            if (bitmap.contains(shareId)) {
+                return bitmap;
+            }
+            RoaringBitmap copy = bitmap.clone();
+            copy.add(shareId);
+            copy.runOptimize();
+            return copy;
+        });
+    }
+
+    /**
+     * 单个用户位图占用的字节数，不在缓存中返回 null
+     * @param userId
+     * @return
+     */
+    public Long sizeInBytes(Integer userId) {
+        RoaringBitmap bitmap = this.cache.getIfPresent(userId);
+        return bitmap == null ? null : bitmap.getLongSizeInBytes();
+    }
+
+    /**
+     * 缓存的用户数
+     * @return
+     */
+    public long userCount() {
+        return this.cache.estimatedSize();
+    }
+
+    /**
+     * 全部位图占用的字节数
+     * @return
+     */
+    public long totalSizeInBytes() {
+        return this.cache.asMap().values().stream()
+                .mapToLong(RoaringBitmap::getLongSizeInBytes)
+                .sum();
+    }
+
+}
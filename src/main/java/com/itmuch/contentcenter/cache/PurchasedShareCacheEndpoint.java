@@ -0,0 +1,43 @@
+package com.itmuch.contentcenter.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 已兑换分享位图缓存内存占用
+ *  /actuator/purchasedshares            全部用户
+ *  /actuator/purchasedshares/{userId}   单个用户
+ */
+@Component
+@Endpoint(id = "purchasedshares")
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class PurchasedShareCacheEndpoint {
+
+    private final PurchasedShareCache purchasedShareCache;
+
+    @ReadOperation
+    public Map<String, Object> total() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("users", this.purchasedShareCache.userCount());
+        result.put("totalSizeInBytes", this.purchasedShareCache.totalSizeInBytes());
+        return result;
+    }
+
+    @ReadOperation
+    public Map<String, Object> user(@Selector Integer userId) {
+        Long sizeInBytes = this.purchasedShareCache.sizeInBytes(userId);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("userId", userId);
+        result.put("cached", sizeInBytes != null);
+        result.put("sizeInBytes", sizeInBytes);
+        return result;
+    }
+
+}
@@ -0,0 +1,258 @@
+package com.itmuch.contentcenter.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.itmuch.contentcenter.domain.dto.content.ShareDTO;
+import com.itmuch.contentcenter.exception.ShareNotFoundException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * 分享详情(ShareDTO)两级缓存
+ *  一级：进程内 Caffeine，按条数和写入时间淘汰
+ *  二级：共享缓存 SharedCacheTier，可选
+ *
+ * 不存在的分享id会短暂缓存(负缓存)，扫描随机id时不会每次都查询数据库
+ * 热点分享可以固定(pin)在缓存中，不受条数和过期时间淘汰，由调用方主动刷新
+ *
+ * 不缓存降级数据：用户中心降级时组装的 ShareDTO(degraded = true)只返回不缓存
+ * 防止旧值回填：加载前取 loadMark()，写入时如果这期间该分享被删除过缓存(审核等)，放弃写入
+ *
+ * 命中/未命中/淘汰 计数可以通过 /actuator/metrics/cache.gets?tag=cache:share 等查看
+ */
+@Slf4j
+@Component
+public class ShareCache {
+
+    private static final String CACHE_NAME = "share";
+
+    private static final String MISSING_CACHE_NAME = "shareMissing";
+
+    /**
+     * 删除缓存时间戳的分段数，分享id按分段记录最后一次删除缓存的时间戳
+     */
+    private static final int EVICT_STRIPES = 1024;
+
+    private final ShareCacheProperties properties;
+
+    private final Cache<Integer, ShareDTO> localCache;
+
+    private final SharedCacheTier<Integer, ShareDTO> sharedCache;
+
+    /**
+     * 不存在的分享id
+     */
+    private final Cache<Integer, Boolean> missingCache;
+
+    private final Counter sharedHits;
+
+    /**
+     * 固定在缓存中的热点分享
+     */
+    private final Map<Integer, ShareDTO> pinned = new ConcurrentHashMap<>();
+
+    private final Counter sharedMisses;
+
+    private final SingleFlight<Integer, ShareDTO> singleFlight;
+
+    /**
+     * 逻辑时钟，每次删除缓存加一
+     */
+    private final AtomicLong clock = new AtomicLong();
+
+    /**
+     * 每个分段最后一次删除缓存时的逻辑时钟
+     */
+    private final AtomicLongArray evictedAt = new AtomicLongArray(EVICT_STRIPES);
+
+    public ShareCache(ShareCacheProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(properties.getLocalMaximumSize())
+                .expireAfterWrite(properties.getLocalExpireAfterWriteSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        this.sharedCache = properties.isSharedEnabled() ? new LocalSharedCacheTier<>(properties.getSharedMaximumSize()) : null;
+        this.missingCache = Caffeine.newBuilder()
+                .maximumSize(properties.getMissingMaximumSize())
+                .expireAfterWrite(properties.getMissingExpireAfterWriteSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, this.localCache, CACHE_NAME);
+        CaffeineCacheMetrics.monitor(meterRegistry, this.missingCache, MISSING_CACHE_NAME);
+        this.sharedHits = meterRegistry.counter("share.cache.shared.gets", "result", "hit");
+        this.sharedMisses = meterRegistry.counter("share.cache.shared.gets", "result", "miss");
+        this.singleFlight = new SingleFlight<>(CACHE_NAME, meterRegistry);
+    }
+
+    /**
+     * 读穿缓存：一级 -> 二级 -> loader
+     * @param id
+     * @param loader 缓存未命中时加载 ShareDTO，分享不存在时抛出 ShareNotFoundException
+     * @return
+     */
+    public ShareDTO get(Integer id, Function<Integer, ShareDTO> loader) {
+        ShareDTO shareDTO = this.pinned.get(id);
+        if (shareDTO != null) {
+            return shareDTO;
+        }
+
+        shareDTO = this.localCache.getIfPresent(id);
+        if (shareDTO != null) {
+            return shareDTO;
+        }
+
+        if (this.missingCache.getIfPresent(id) != null) {
+            throw new ShareNotFoundException(id);
+        }
+
+        // 一级缓存未命中，同一个分享的并发加载合并成一次
+        return this.singleFlight.load(id, key -> this.loadThrough(key, loader));
+    }
+
+    private ShareDTO loadThrough(Integer id, Function<Integer, ShareDTO> loader) {
+        long loadMark = this.loadMark();
+        ShareDTO shareDTO;
+        if (this.sharedCache != null) {
+            shareDTO = this.sharedCache.get(id);
+            if (shareDTO != null) {
+                this.sharedHits.increment();
+                this.localCache.put(id, shareDTO);
+                this.undoIfEvictedSince(id, loadMark);
+                return shareDTO;
+            }
+            this.sharedMisses.increment();
+        }
+
+        try {
+            shareDTO = loader.apply(id);
+        } catch (ShareNotFoundException e) {
+            this.missingCache.put(id, Boolean.TRUE);
+            throw e;
+        }
+        if (shareDTO != null) {
+            this.put(id, shareDTO, loadMark);
+        }
+        return shareDTO;
+    }
+
+    /**
+     * 加载数据前调用，写入缓存时传给 put / pin
+     * @return
+     */
+    public long loadMark() {
+        return this.clock.get();
+    }
+
+    /**
+     * 写入缓存
+     * @param id
+     * @param shareDTO 降级数据不会写入
+     * @param loadMark 加载前的 loadMark()，之后该分享被删除过缓存则放弃写入
+     * @return 是否写入
+     */
+    public boolean put(Integer id, ShareDTO shareDTO, long loadMark) {
+        if (shareDTO.isDegraded() || this.evictedSince(id, loadMark)) {
+            return false;
+        }
+        this.localCache.put(id, shareDTO);
+        if (this.sharedCache != null) {
+            this.sharedCache.put(id, shareDTO, this.properties.getSharedExpireAfterWriteSeconds());
+        }
+        // 检查和写入之间被删除了缓存，撤销写入
+        return !this.undoIfEvictedSince(id, loadMark);
+    }
+
+    /**
+     * 固定(或刷新)热点分享
+     * @param id
+     * @param shareDTO
+     * @param loadMark 同 put
+     */
+    public void pin(Integer id, ShareDTO shareDTO, long loadMark) {
+        if (this.put(id, shareDTO, loadMark)) {
+            this.pinned.put(id, shareDTO);
+            this.undoIfEvictedSince(id, loadMark);
+        }
+    }
+
+    private boolean evictedSince(Integer id, long loadMark) {
+        return this.evictedAt.get(stripe(id)) > loadMark;
+    }
+
+    private boolean undoIfEvictedSince(Integer id, long loadMark) {
+        if (!this.evictedSince(id, loadMark)) {
+            return false;
+        }
+        this.invalidate(id);
+        return true;
+    }
+
+    private static int stripe(Integer id) {
+        return Math.floorMod(id.hashCode(), EVICT_STRIPES);
+    }
+
+    /**
+     * 只保留给定的热点分享，其余的取消固定，回到普通缓存的淘汰策略
+     * @param ids
+     */
+    public void retainPinned(Collection<Integer> ids) {
+        this.pinned.keySet().retainAll(ids);
+    }
+
+    public Set<Integer> pinnedIds() {
+        return new HashSet<>(this.pinned.keySet());
+    }
+
+    /**
+     * 删除分享的缓存，包括不存在的记录；新建分享后调用可以让它立即可见
+     * @param id
+     */
+    public void evict(Integer id) {
+        // 先记录删除时间，正在加载的旧值写入时会发现并放弃
+        this.evictedAt.set(stripe(id), this.clock.incrementAndGet());
+        this.missingCache.invalidate(id);
+        this.invalidate(id);
+    }
+
+    private void invalidate(Integer id) {
+        this.pinned.remove(id);
+        this.localCache.invalidate(id);
+        if (this.sharedCache != null) {
+            this.sharedCache.evict(id);
+        }
+    }
+
+    /**
+     * 在事务中时，等事务提交后再删除缓存，避免提交前被其他请求用旧数据回填
+     * @param id
+     */
+    public void evictAfterCommit(Integer id) {
+        this.evict(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    evict(id);
+                }
+            });
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.itmuch.contentcenter.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 分享详情两级缓存配置
+ *  对应 application.yml 中的 share-cache
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "share-cache")
+public class ShareCacheProperties {
+
+    /**
+     * 一级缓存(进程内)最大条数
+     */
+    private long localMaximumSize = 10000;
+
+    /**
+     * 一级缓存写入后过期时间，单位秒
+     */
+    private long localExpireAfterWriteSeconds = 60;
+
+    /**
+     * 是否开启二级缓存(共享缓存)
+     */
+    private boolean sharedEnabled = false;
+
+    /**
+     * 二级缓存写入后过期时间，单位秒
+     */
+    private long sharedExpireAfterWriteSeconds = 300;
+
+    /**
+     * 二级缓存本地替身(LocalSharedCacheTier)最大条数
+     */
+    private long sharedMaximumSize = 100000;
+
+    /**
+     * 不存在的分享id(负缓存)最多缓存多少个
+     */
+    private long missingMaximumSize = 10000;
+
+    /**
+     * 不存在的分享id缓存多久，单位秒；新建的分享最多在这个时间后可见(或调用 ShareCache.evict 立即可见)
+     */
+    private long missingExpireAfterWriteSeconds = 30;
+
+    /**
+     * 已兑换分享位图缓存最多缓存多少个用户，超过后淘汰最近最少使用的用户
+     */
+    private long purchasedMaximumUsers = 10000;
+
+    /**
+     * 已兑换分享位图写入后过期时间，单位秒，用于感知其他实例的兑换
+     */
+    private long purchasedExpireAfterWriteSeconds = 600;
+
+    /**
+     * 分页总数缓存最多缓存多少个标题条件
+     */
+    private long countMaximumSize = 1000;
+
+    /**
+     * 分页总数缓存写入后过期时间，单位秒，兜底其他实例的审核
+     */
+    private long countExpireAfterWriteSeconds = 300;
+
+    /**
+     * 不带标题条件的列表是否使用近似总数(内存计数器)
+     */
+    private boolean approximateTotal = false;
+
+    /**
+     * 近似总数计数器多久和数据库校准一次，单位秒
+     */
+    private long approximateTotalResyncSeconds = 600;
+
+    /**
+     * 热点分享个数(top-K)，热点分享常驻缓存不会被淘汰
+     */
+    private int hotTopK = 20;
+
+    /**
+     * 热点统计窗口，单位秒，统计最近一到两个窗口的访问次数
+     */
+    private long hotWindowSeconds = 60;
+
+    /**
+     * 热点分享主动刷新间隔，单位秒，应小于一级缓存过期时间
+     */
+    private long hotRefreshSeconds = 30;
+
+    /**
+     * 窗口内至少访问多少次才算热点
+     */
+    private long hotMinCount = 10;
+
+    /**
+     * count-min sketch 宽度，越大误差越小
+     */
+    private int hotSketchWidth = 2048;
+
+    /**
+     * count-min sketch 深度(哈希函数个数)，越大误差超出上界的概率越小
+     */
+    private int hotSketchDepth = 4;
+
+}
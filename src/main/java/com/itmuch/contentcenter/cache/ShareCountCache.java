@@ -0,0 +1,108 @@
+package com.itmuch.contentcenter.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.itmuch.contentcenter.dao.content.ShareMapper;
+import com.itmuch.contentcenter.domain.enums.AuditStatusEnum;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 分享列表总数缓存
+ *  总数只会在审核状态变化时改变，按规范化后的标题条件缓存 count(*) 的结果
+ *  不带标题条件时可以开启近似总数：内存计数器，审核通过时 +1，定期和数据库校准
+ */
+@Component
+public class ShareCountCache {
+
+    private static final String CACHE_NAME = "shareCount";
+
+    private final ShareMapper shareMapper;
+
+    private final ShareCacheProperties properties;
+
+    private final LoadingCache<String, Long> cache;
+
+    private final AtomicLong approximateTotal = new AtomicLong();
+
+    private volatile long approximateTotalSyncedAt = 0;
+
+    public ShareCountCache(ShareMapper shareMapper, ShareCacheProperties properties, MeterRegistry meterRegistry) {
+        this.shareMapper = shareMapper;
+        this.properties = properties;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getCountMaximumSize())
+                .expireAfterWrite(properties.getCountExpireAfterWriteSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build(normalizedTitle -> shareMapper.selectCountByParam(normalizedTitle));
+        CaffeineCacheMetrics.monitor(meterRegistry, this.cache, CACHE_NAME);
+    }
+
+    /**
+     * 获取列表总数
+     * @param title 标题条件，可以为空
+     * @return
+     */
+    public long count(String title) {
+        String normalizedTitle = normalize(title);
+        if (normalizedTitle.isEmpty() && this.properties.isApproximateTotal()) {
+            return this.approximateTotal();
+        }
+        return this.cache.get(normalizedTitle);
+    }
+
+    /**
+     * 审核状态变化后调用，事务提交后生效
+     * @param auditStatus 新的审核状态
+     */
+    public void onAuditStatusChanged(AuditStatusEnum auditStatus) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    applyAuditStatusChanged(auditStatus);
+                }
+            });
+        } else {
+            this.applyAuditStatusChanged(auditStatus);
+        }
+    }
+
+    private void applyAuditStatusChanged(AuditStatusEnum auditStatus) {
+        // 只有审核通过会改变列表总数
+        if (AuditStatusEnum.PASS.equals(auditStatus)) {
+            this.cache.invalidateAll();
+            this.approximateTotal.incrementAndGet();
+        }
+    }
+
+    private long approximateTotal() {
+        long now = System.currentTimeMillis();
+        if (now - this.approximateTotalSyncedAt > TimeUnit.SECONDS.toMillis(this.properties.getApproximateTotalResyncSeconds())) {
+            // 双重检查，只让一个线程去数据库校准
+            synchronized (this.approximateTotal) {
+                if (now - this.approximateTotalSyncedAt > TimeUnit.SECONDS.toMillis(this.properties.getApproximateTotalResyncSeconds())) {
+                    this.approximateTotal.set(this.shareMapper.selectCountByParam(null));
+                    this.approximateTotalSyncedAt = now;
+                }
+            }
+        }
+        return this.approximateTotal.get();
+    }
+
+    /**
+     * 规范化标题条件：去掉首尾空格，null 视为空串
+     *  列表查询和总数查询要用同一个规范化后的值，否则一页数据和总数可能对不上
+     */
+    private static String normalize(String title) {
+        return StringUtils.trimToEmpty(title);
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.itmuch.contentcenter.cache;
+
+/**
+ * 二级缓存(共享缓存)抽象
+ *  生产环境可以替换成 Redis 等实现，默认提供本地内存实现 LocalSharedCacheTier
+ * @param <K> key
+ * @param <V> value
+ */
+public interface SharedCacheTier<K, V> {
+
+    /**
+     * 获取缓存，不存在或已过期返回 null
+     * @param key
+     * @return
+     */
+    V get(K key);
+
+    void put(K key, V value, long ttlSeconds);
+
+    void evict(K key);
+
+}
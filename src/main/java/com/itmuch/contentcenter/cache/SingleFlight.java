@@ -0,0 +1,114 @@
+package com.itmuch.contentcenter.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * 按 key 合并并发加载(singleflight)
+ *  同一个 key 同时只有一个加载在执行，其他并发调用方等待同一个结果，不再各自加载
+ *  加载完成后立即移除，之后的调用会重新加载(缓存由调用方负责)
+ *
+ * 指标：/actuator/metrics/singleflight.loads?tag=name:xxx&tag=result:collapsed
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter executed;
+
+    private final Counter collapsed;
+
+    public SingleFlight(String name, MeterRegistry meterRegistry) {
+        this.executed = meterRegistry.counter("singleflight.loads", "name", name, "result", "executed");
+        this.collapsed = meterRegistry.counter("singleflight.loads", "name", name, "result", "collapsed");
+    }
+
+    /**
+     * 同步加载，由第一个调用方在自己的线程中执行 loader
+     * @param key
+     * @param loader
+     * @return
+     */
+    public V load(K key, Function<K, V> loader) {
+        CompletableFuture<V> promise = new CompletableFuture<>();
+        CompletableFuture<V> existing = this.inFlight.putIfAbsent(key, promise);
+        if (existing != null) {
+            this.collapsed.increment();
+            return join(existing);
+        }
+
+        this.executed.increment();
+        try {
+            V value = loader.apply(key);
+            this.inFlight.remove(key, promise);
+            promise.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            this.inFlight.remove(key, promise);
+            promise.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * 异步加载，loader 返回的 future 完成前，相同 key 的调用都会拿到同一个 future
+     * @param key
+     * @param loader
+     * @return
+     */
+    public CompletableFuture<V> loadAsync(K key, Function<K, CompletableFuture<V>> loader) {
+        CompletableFuture<V> promise = new CompletableFuture<>();
+        CompletableFuture<V> existing = this.inFlight.putIfAbsent(key, promise);
+        if (existing != null) {
+            this.collapsed.increment();
+            return existing;
+        }
+
+        this.executed.increment();
+        CompletableFuture<V> source;
+        try {
+            source = loader.apply(key);
+        } catch (RuntimeException | Error e) {
+            source = new CompletableFuture<>();
+            source.completeExceptionally(e);
+        }
+        source.whenComplete((value, throwable) -> {
+            this.inFlight.remove(key, promise);
+            if (throwable != null) {
+                promise.completeExceptionally(throwable);
+            } else {
+                promise.complete(value);
+            }
+        });
+        return promise;
+    }
+
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待加载结果被中断！", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+}
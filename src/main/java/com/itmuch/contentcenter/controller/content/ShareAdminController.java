@@ -2,12 +2,20 @@ package com.itmuch.contentcenter.controller.content;
 
 import com.itmuch.contentcenter.auth.CheckAuthorization;
 import com.itmuch.contentcenter.domain.dto.content.ShareAuditDTO;
+import com.itmuch.contentcenter.domain.dto.content.ShareBatchAuditDTO;
 import com.itmuch.contentcenter.domain.entity.content.Share;
+import com.itmuch.contentcenter.domain.enums.AuditStatusEnum;
 import com.itmuch.contentcenter.service.content.ShareAdminService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+
 @RestController
 @RequestMapping("/admin/shares")
 @RequiredArgsConstructor(onConstructor = @__(@Autowired))
@@ -29,4 +37,34 @@ public class ShareAdminController {
         return this.shareAdminService.auditByIdStreamMqTrans(id, auditDTO);
     }
 
+    /**
+     * 批量审核，所有分享在一个本地事务中审核，审核通过时只发送一条事务消息
+     * @param auditDTO
+     * @return
+     */
+    @PutMapping("/audit/batch")
+    @CheckAuthorization("admin")
+    public List<Share> auditBatch(@RequestBody ShareBatchAuditDTO auditDTO) {
+        return this.shareAdminService.auditBatchStreamMqTrans(auditDTO);
+    }
+
+    /**
+     * 流式导出分享，每行一个 JSON (NDJSON)
+     * @param auditStatus 审核状态，不传导出全部
+     * @param updatedAfter 修改时间下限(包含)，ISO 格式，如 2020-01-01T00:00:00.000+08:00
+     * @param updatedBefore 修改时间上限(不包含)
+     * @param response
+     * @throws IOException
+     */
+    @GetMapping("/export")
+    @CheckAuthorization("admin")
+    public void export(
+            @RequestParam(required = false) AuditStatusEnum auditStatus,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date updatedAfter,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date updatedBefore,
+            HttpServletResponse response) throws IOException {
+        response.setContentType("application/x-ndjson;charset=UTF-8");
+        this.shareAdminService.exportShares(auditStatus, updatedAfter, updatedBefore, response.getOutputStream());
+    }
+
 }
@@ -2,8 +2,14 @@ package com.itmuch.contentcenter.controller.content;
 
 import com.github.pagehelper.PageInfo;
 import com.itmuch.contentcenter.auth.CheckLogin;
+import com.itmuch.contentcenter.cache.HotShareDetector;
+import com.itmuch.contentcenter.domain.dto.content.ShareCursorPageDTO;
 import com.itmuch.contentcenter.domain.dto.content.ShareDTO;
+import com.itmuch.contentcenter.domain.dto.content.ShareListItemDTO;
 import com.itmuch.contentcenter.domain.entity.content.Share;
+import com.itmuch.contentcenter.domain.enums.ShareRankingTypeEnum;
+import com.itmuch.contentcenter.search.ShareRanking;
+import com.itmuch.contentcenter.service.content.ShareExchangeIdempotency;
 import com.itmuch.contentcenter.service.content.ShareService;
 import com.itmuch.contentcenter.util.JwtOperator;
 import io.jsonwebtoken.Claims;
@@ -11,8 +17,11 @@ import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.List;
+import java.util.Objects;
 
 @RestController
 @RequestMapping("/shares")
@@ -23,10 +32,33 @@ public class ShareController {
 
     private final JwtOperator jwtOperator;
 
+    private final HotShareDetector hotShareDetector;
+
+    private final ShareExchangeIdempotency shareExchangeIdempotency;
+
+    private final ShareRanking shareRanking;
+
+    /**
+     * 分享详情，支持 If-None-Match / If-Modified-Since 条件请求
+     *  分享详情来自缓存，校验不需要重新组装 ShareDTO；没有变化时返回 304 不返回 body
+     * @param id
+     * @param webRequest
+     * @return
+     */
     @GetMapping("/{id}")
     @CheckLogin
-    public ShareDTO findById(@PathVariable  Integer id) {
-        return shareService.findById(id);
+    public ShareDTO findById(@PathVariable  Integer id, WebRequest webRequest) {
+        ShareDTO shareDTO = shareService.findById(id);
+
+        // 统计访问次数，用于识别热点分享；分享存在才统计，不存在的 id 不会占用热点统计
+        hotShareDetector.record(id);
+
+        long lastModified = shareDTO.getUpdateTime() == null ? -1 : shareDTO.getUpdateTime().getTime();
+        if (webRequest.checkNotModified(etag(shareDTO), lastModified)) {
+            // 返回 null，Spring 会响应 304
+            return null;
+        }
+        return shareDTO;
     }
 
     /**
@@ -37,31 +69,94 @@ public class ShareController {
      * @return
      */
     @GetMapping("/q")
-    public PageInfo<Share> q(
+    public PageInfo<ShareListItemDTO> q(
             @RequestParam(required = false) String title,
             @RequestParam(required = false, defaultValue = "1") Integer pageNo,
             @RequestParam(required = false, defaultValue = "10") Integer pageSize,
-            @RequestHeader(value = "X-Token", required = false) String token) {
+            @RequestHeader(value = "X-Token", required = false) String token,
+            HttpServletRequest request) {
 
         if (pageSize > 100) {
             pageSize = 100;
         }
 
-        Integer userId = null;
-        if (StringUtils.isNotBlank(token)) {
-            Claims claims = this.jwtOperator.getClaimsFromToken(token);
-            userId = (Integer) claims.get("id");
+        return this.shareService.q(title, pageNo, pageSize, this.getUserId(token, request));
+    }
+
+    /**
+     * 排行榜，从内存读取，和分享总数无关
+     * @param type MOST_BOUGHT : 兑换最多 ; NEWEST : 最新
+     * @param size
+     * @return
+     */
+    @GetMapping("/top")
+    public List<ShareListItemDTO> top(
+            @RequestParam(required = false, defaultValue = "MOST_BOUGHT") ShareRankingTypeEnum type,
+            @RequestParam(required = false, defaultValue = "10") Integer size) {
+        return this.shareRanking.top(type, size);
+    }
+
+    /**
+     * 游标分页查询，深度翻页和第一页的开销一样
+     * @param title
+     * @param after 上一页返回的 nextCursor，第一页不传
+     * @param pageSize
+     * @return
+     */
+    @GetMapping("/q/seek")
+    public ShareCursorPageDTO<ShareListItemDTO> seek(
+            @RequestParam(required = false) String title,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false, defaultValue = "10") Integer pageSize,
+            @RequestHeader(value = "X-Token", required = false) String token,
+            HttpServletRequest request) {
+
+        if (pageSize > 100) {
+            pageSize = 100;
         }
 
-        return this.shareService.q(title, pageNo, pageSize, userId);
+        return this.shareService.seek(title, after, pageSize, this.getUserId(token, request));
     }
 
     /**
      * 积分兑换指定ID
+     *  请求头 Idempotency-Key 可选(最长 64 个字符)，客户端重试时带上同一个值，重试落到其他实例也不会重复兑换
      */
     @GetMapping("/exchange/{id}")
     @CheckLogin
-    public Share exchangeById(@PathVariable Integer id, HttpServletRequest request) {
-        return this.shareService.exchangeById(id, request);
+    public Share exchangeById(@PathVariable Integer id,
+                              @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                              HttpServletRequest request) {
+        Integer userId = (Integer) request.getAttribute("id");
+        return this.shareExchangeIdempotency.execute(userId, id, idempotencyKey,
+                () -> this.shareService.exchangeById(id, idempotencyKey, request));
+    }
+
+    /**
+     * 强 ETag：分享id + 分享修改时间 + 发布人昵称的版本(哈希)
+     *  分享被审核、发布人改昵称都会让 ETag 变化
+     * @param shareDTO
+     * @return
+     */
+    private static String etag(ShareDTO shareDTO) {
+        long shareVersion = shareDTO.getUpdateTime() == null ? 0 : shareDTO.getUpdateTime().getTime();
+        String nicknameVersion = Integer.toHexString(Objects.hashCode(shareDTO.getWxNickname()));
+        return "\"" + shareDTO.getId() + "-" + shareVersion + "-" + nicknameVersion + "\"";
+    }
+
+    /**
+     * 从 token 中解析用户id，未登录返回 null
+     * @param token
+     * @return
+     */
+    private Integer getUserId(String token, HttpServletRequest request) {
+        if (StringUtils.isBlank(token)) {
+            return null;
+        }
+        Claims claims = this.jwtOperator.getClaimsFromToken(token);
+        Integer userId = (Integer) claims.get("id");
+        // 和 @CheckLogin 一样放在 request attribute 中，读写分离切面不需要再解析 token
+        request.setAttribute("id", userId);
+        return userId;
     }
 }
@@ -0,0 +1,53 @@
+package com.itmuch.contentcenter.controller.content;
+
+import com.itmuch.contentcenter.auth.CheckLogin;
+import com.itmuch.contentcenter.domain.dto.content.ShareExchangeDTO;
+import com.itmuch.contentcenter.service.content.ShareExchangePipeline;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import java.net.URI;
+
+/**
+ * 异步积分兑换，share-exchange.async.enabled = true 时才开启
+ */
+@RestController
+@RequestMapping("/shares/exchange-async")
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+@ConditionalOnProperty(prefix = "share-exchange.async", name = "enabled", havingValue = "true")
+public class ShareExchangeController {
+
+    private final ShareExchangePipeline shareExchangePipeline;
+
+    /**
+     * 受理兑换，返回 202 和查询凭证，Location 为状态查询地址
+     *  已经兑换过时直接返回 200
+     */
+    @PostMapping("/{shareId}")
+    @CheckLogin
+    public ResponseEntity<ShareExchangeDTO> exchange(@PathVariable Integer shareId, HttpServletRequest request) {
+        Integer userId = (Integer) request.getAttribute("id");
+        ShareExchangeDTO shareExchangeDTO = this.shareExchangePipeline.submit(userId, shareId);
+        if (shareExchangeDTO.getId() == null) {
+            return ResponseEntity.ok(shareExchangeDTO);
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .location(URI.create("/shares/exchange-async/tasks/" + shareExchangeDTO.getId()))
+                .body(shareExchangeDTO);
+    }
+
+    /**
+     * 查询兑换状态
+     */
+    @GetMapping("/tasks/{id}")
+    @CheckLogin
+    public ShareExchangeDTO status(@PathVariable Integer id, HttpServletRequest request) {
+        Integer userId = (Integer) request.getAttribute("id");
+        return this.shareExchangePipeline.status(userId, id);
+    }
+}
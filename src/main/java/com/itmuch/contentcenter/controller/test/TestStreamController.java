@@ -1,5 +1,6 @@
 package com.itmuch.contentcenter.controller.test;
 
+import com.itmuch.contentcenter.rocketmq.AsyncMessagePublisher;
 import com.itmuch.contentcenter.rocketmq.MySource;
 import com.itmuch.contentcenter.rocketmq.MyTagsSource;
 import lombok.RequiredArgsConstructor;
@@ -10,6 +11,8 @@ import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Spring Cloud Stream 测试实现类
  */
@@ -26,20 +29,23 @@ public class TestStreamController {
     // MyTagsSource 与 @EnableBinding(MyTagsSource.class) 是一个
     private final MyTagsSource myTagsSource;
 
+    // 异步发送，等待 broker 返回时不占用 Tomcat 线程
+    private final AsyncMessagePublisher asyncMessagePublisher;
+
     /**
      * 生产消息
      * @return
      */
     @GetMapping("/test-stream")
-    public String testStream() {
-        this.source
-                .output()
-                .send(
+    public CompletableFuture<String> testStream() {
+        return this.asyncMessagePublisher
+                .publish(
+                        this.source.output(),
                         MessageBuilder
                                 .withPayload("test-stream 消息体")
                                 .build()
-                );
-        return "success";
+                )
+                .thenApply(sent -> "success");
     }
 
     /**
@@ -47,15 +53,15 @@ public class TestStreamController {
      * @return
      */
     @GetMapping("/test-stream-my-source")
-    public String testStreamMySource() {
-        this.mySource
-                .output()
-                .send(
+    public CompletableFuture<String> testStreamMySource() {
+        return this.asyncMessagePublisher
+                .publish(
+                        this.mySource.output(),
                         MessageBuilder
                                 .withPayload("test-stream-my-source 消息体")
                                 .build()
-                );
-        return "success";
+                )
+                .thenApply(sent -> "success");
     }
 
     /**
@@ -64,17 +70,17 @@ public class TestStreamController {
      * @return
      */
     @GetMapping("/test-stream-condition")
-    public String testStreamCondition() {
-        this.source
-                .output()
-                .send(
+    public CompletableFuture<String> testStreamCondition() {
+        return this.asyncMessagePublisher
+                .publish(
+                        this.source.output(),
                         MessageBuilder
                                 .withPayload("test-stream-condition 消息体")
                                 // 消息过滤 condition 方式设定 header
                                 .setHeader("my-header", "my-condition-header")
                                 .build()
-                );
-        return "success";
+                )
+                .thenApply(sent -> "success");
     }
 
     /**
@@ -82,17 +88,17 @@ public class TestStreamController {
      * @return
      */
     @GetMapping("/test-stream-condition-tags")
-    public String testStreamConditionTags() {
-        this.myTagsSource
-                .output()
-                .send(
+    public CompletableFuture<String> testStreamConditionTags() {
+        return this.asyncMessagePublisher
+                .publish(
+                        this.myTagsSource.output(),
                         MessageBuilder
                                 .withPayload("test-stream-condition-tags 消息体")
                                 // 注意：只能设置1个tag
                                 .setHeader(RocketMQHeaders.TAGS, "tag1")
                                 .build()
-                );
-        return "success";
+                )
+                .thenApply(sent -> "success");
     }
 
 
@@ -1,7 +1,36 @@
 package com.itmuch.contentcenter.dao.content;
 
 import com.itmuch.contentcenter.domain.entity.content.MidUserShare;
+import org.apache.ibatis.annotations.Param;
 import tk.mybatis.mapper.common.Mapper;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface MidUserShareMapper extends Mapper<MidUserShare> {
-}
\ No newline at end of file
+
+    /**
+     * 查询用户已兑换的全部分享id
+     * @param userId
+     * @return
+     */
+    List<Integer> selectShareIdsByUserId(@Param("userId") Integer userId);
+
+    /**
+     * 幂等键兑换过的分享id
+     * @param userId
+     * @param idempotencyKey
+     * @return 没有用过时返回 null
+     */
+    Integer selectShareIdByIdempotencyKey(@Param("userId") Integer userId,
+                                          @Param("idempotencyKey") String idempotencyKey);
+
+    /**
+     * 查询用户在给定分享中已兑换的分享id
+     * @param userId
+     * @param shareIds 不能为空
+     * @return
+     */
+    List<Integer> selectPurchasedShareIds(@Param("userId") Integer userId,
+                                          @Param("shareIds") Collection<Integer> shareIds);
+}
@@ -0,0 +1,63 @@
+package com.itmuch.contentcenter.dao.content;
+
+import com.itmuch.contentcenter.domain.entity.content.ShareExchange;
+import org.apache.ibatis.annotations.Param;
+import tk.mybatis.mapper.common.Mapper;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+public interface ShareExchangeMapper extends Mapper<ShareExchange> {
+
+    /**
+     * 接管租约已到期的 PENDING 兑换记录，按id升序(受理顺序)
+     * @param owner 接管的实例
+     * @param now
+     * @param lockedUntil 新的租约到期时间
+     * @param limit
+     * @return 接管的条数
+     */
+    int claimExpired(@Param("owner") String owner,
+                     @Param("now") Date now,
+                     @Param("lockedUntil") Date lockedUntil,
+                     @Param("limit") int limit);
+
+    /**
+     * 实例持有的 PENDING 兑换记录，按id升序(受理顺序)
+     * @param owner
+     * @return
+     */
+    List<ShareExchange> selectPendingByOwner(@Param("owner") String owner);
+
+    /**
+     * 续约实例正在处理的兑换记录
+     * @param ids 不能为空
+     * @param owner
+     * @param lockedUntil
+     * @return
+     */
+    int renewLease(@Param("ids") Collection<Integer> ids,
+                   @Param("owner") String owner,
+                   @Param("lockedUntil") Date lockedUntil);
+
+    /**
+     * 用户对某个分享还在处理中的兑换记录
+     * @param userId
+     * @param shareId
+     * @return
+     */
+    ShareExchange selectPendingByUserIdAndShareId(@Param("userId") Integer userId,
+                                                  @Param("shareId") Integer shareId);
+
+    /**
+     * 批量修改状态
+     * @param ids 不能为空
+     * @param status
+     * @param reason
+     * @return
+     */
+    int updateStatusByIds(@Param("ids") Collection<Integer> ids,
+                          @Param("status") String status,
+                          @Param("reason") String reason);
+}
@@ -1,11 +1,117 @@
 package com.itmuch.contentcenter.dao.content;
 
+import com.itmuch.contentcenter.domain.dto.content.ShareListItemDTO;
 import com.itmuch.contentcenter.domain.entity.content.Share;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.ResultHandler;
 import tk.mybatis.mapper.common.Mapper;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 public interface ShareMapper extends Mapper<Share> {
     List<Share> selectByParam(@Param("title") String title);
-}
\ No newline at end of file
+
+    /**
+     * 和 selectByParam 条件相同，只查询列表展示需要的字段，按 id 升序(和标题索引的顺序一致)
+     * @param title
+     * @return
+     */
+    List<ShareListItemDTO> selectListItemsByParam(@Param("title") String title);
+
+    /**
+     * selectByParam 的总数
+     * @param title
+     * @return
+     */
+    long selectCountByParam(@Param("title") String title);
+
+    /**
+     * 游标(seek)分页：按 (create_time, id) 倒序，取游标之后的 limit 条
+     * @param title
+     * @param afterCreateTime 上一页最后一条的创建时间，为 null 表示第一页
+     * @param afterId 上一页最后一条的id
+     * @param limit
+     * @return
+     */
+    List<ShareListItemDTO> selectListItemsByParamAfter(@Param("title") String title,
+                                                       @Param("afterCreateTime") Date afterCreateTime,
+                                                       @Param("afterId") Integer afterId,
+                                                       @Param("limit") Integer limit);
+
+    /**
+     * 逐行扫描所有审核通过的分享的 id 和 title，用于构建标题索引
+     * @param handler
+     */
+    void scanPassTitles(ResultHandler<Share> handler);
+
+    /**
+     * 查询 update_time 不早于 updatedAfter 的分享的 id、title、audit_status，用于标题索引追赶
+     * @param updatedAfter
+     * @return
+     */
+    List<Share> selectTitlesUpdatedSince(@Param("updatedAfter") Date updatedAfter);
+
+    /**
+     * 根据主键批量查询列表项
+     * @param ids 不能为空
+     * @return
+     */
+    List<ShareListItemDTO> selectListItemsByIds(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * 根据主键批量查询下载地址，只返回 id 和 downloadUrl
+     * @param ids 不能为空
+     * @return
+     */
+    List<Share> selectDownloadUrlsByIds(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * 导出分享，返回游标逐行读取，需要在事务中使用
+     * @param auditStatus 审核状态，为空不过滤
+     * @param updatedAfter 修改时间下限(包含)，为空不过滤
+     * @param updatedBefore 修改时间上限(不包含)，为空不过滤
+     * @return
+     */
+    Cursor<Share> selectForExport(@Param("auditStatus") String auditStatus,
+                                  @Param("updatedAfter") Date updatedAfter,
+                                  @Param("updatedBefore") Date updatedBefore);
+
+    /**
+     * 审核通过的分享前 limit 条
+     * @param mostBought true : 按兑换数倒序；false : 按创建时间倒序
+     * @param limit
+     * @return
+     */
+    List<Share> selectTopPass(@Param("mostBought") boolean mostBought, @Param("limit") int limit);
+
+    /**
+     * 批量累加兑换数，一条 update 语句
+     * @param deltas 分享id -> 增量，不能为空
+     * @return
+     */
+    int incrementBuyCounts(@Param("deltas") Map<Integer, Long> deltas);
+
+    /**
+     * 根据主键批量查询，只返回 id、user_id 和 audit_status
+     * @param ids 不能为空
+     * @return
+     */
+    List<Share> selectAuditStatusByIds(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * 批量审核，只修改待审核(NOT_YET)的分享
+     * @param ids 不能为空
+     * @param auditStatus
+     * @param reason
+     * @param updateTime
+     * @return 修改的行数
+     */
+    int updateAuditStatusByIds(@Param("ids") Collection<Integer> ids,
+                               @Param("auditStatus") String auditStatus,
+                               @Param("reason") String reason,
+                               @Param("updateTime") Date updateTime);
+}
@@ -0,0 +1,52 @@
+package com.itmuch.contentcenter.dao.messaging;
+
+import com.itmuch.contentcenter.domain.entity.messaging.OutboxMessage;
+import org.apache.ibatis.annotations.Param;
+import tk.mybatis.mapper.common.Mapper;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+public interface OutboxMessageMapper extends Mapper<OutboxMessage> {
+
+    /**
+     * 批量插入
+     * @param messages 不能为空
+     * @return
+     */
+    int insertBatch(@Param("messages") List<OutboxMessage> messages);
+
+    /**
+     * 认领某个分区中还没发送、也没有被认领(或认领已过期)的消息，按id升序最多 limit 条
+     *  分区 = id % partitions，不同的分区可以并行发送；多个实例同时认领时每条记录只会被一个实例认领
+     * @param partition
+     * @param partitions
+     * @param owner 本次认领的标识
+     * @param now
+     * @param lockedUntil 认领到期时间
+     * @param limit
+     * @return 认领的条数
+     */
+    int claimUnsent(@Param("partition") int partition,
+                    @Param("partitions") int partitions,
+                    @Param("owner") String owner,
+                    @Param("now") Date now,
+                    @Param("lockedUntil") Date lockedUntil,
+                    @Param("limit") int limit);
+
+    /**
+     * 查询认领到的还没发送的消息，按id升序
+     * @param owner
+     * @return
+     */
+    List<OutboxMessage> selectClaimed(@Param("owner") String owner);
+
+    /**
+     * 标记为已发送
+     * @param ids 不能为空
+     * @param sentTime
+     * @return
+     */
+    int markSent(@Param("ids") Collection<Integer> ids, @Param("sentTime") Date sentTime);
+}
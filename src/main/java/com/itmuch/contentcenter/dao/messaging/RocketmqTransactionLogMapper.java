@@ -1,7 +1,61 @@
 package com.itmuch.contentcenter.dao.messaging;
 
+import com.itmuch.contentcenter.domain.dto.messaging.TransactionLogPartitionDTO;
 import com.itmuch.contentcenter.domain.entity.messaging.RocketmqTransactionLog;
+import org.apache.ibatis.annotations.Param;
 import tk.mybatis.mapper.common.Mapper;
 
+import java.util.Date;
+import java.util.List;
+
 public interface RocketmqTransactionLogMapper extends Mapper<RocketmqTransactionLog> {
-}
\ No newline at end of file
+
+    /**
+     * 事务日志是否存在，走 (transaction_Id, create_time) 索引
+     * @param transactionId
+     * @return 存在返回 1，不存在返回 null
+     */
+    Integer selectExistsByTransactionId(@Param("transactionId") String transactionId);
+
+    /**
+     * transaction_Id 不存在时才插入事务日志
+     *  表按 create_time 分区后唯一索引必须包含 create_time，transaction_Id 本身不再唯一，由这条语句保证
+     *  必须在可重复读(REPEATABLE READ)事务中执行：读已提交下没有间隙锁，并发插入同一个 transaction_Id 会都成功
+     * @param transactionLog
+     * @return 插入的行数，transaction_Id 已存在时返回 0
+     */
+    int insertIfAbsent(RocketmqTransactionLog transactionLog);
+
+    /**
+     * 表的分区，按分区顺序；没有分区时返回空列表
+     * @return
+     */
+    List<TransactionLogPartitionDTO> selectPartitions();
+
+    /**
+     * 表的估算行数
+     * @return
+     */
+    Long selectTableRows();
+
+    /**
+     * 从 p_max 中拆出一个新分区
+     * @param name 分区名，只能是 p + 数字
+     * @param lessThanDays TO_DAYS(分区结束日期)
+     */
+    void addPartition(@Param("name") String name, @Param("lessThanDays") long lessThanDays);
+
+    /**
+     * 删除一个分区
+     * @param name 分区名，只能是 p + 数字
+     */
+    void dropPartition(@Param("name") String name);
+
+    /**
+     * 没有分区时按时间删除，每次最多删除 limit 行
+     * @param before
+     * @param limit
+     * @return 删除的行数
+     */
+    int deleteBefore(@Param("before") Date before, @Param("limit") int limit);
+}
@@ -0,0 +1,25 @@
+package com.itmuch.contentcenter.datasource;
+
+/**
+ * 当前线程使用的数据源，未设置时使用主库
+ */
+public class DataSourceContextHolder {
+
+    private static final ThreadLocal<DataSourceType> CONTEXT = new ThreadLocal<>();
+
+    private DataSourceContextHolder() {
+    }
+
+    public static DataSourceType get() {
+        return CONTEXT.get();
+    }
+
+    public static void set(DataSourceType type) {
+        if (type == null) {
+            CONTEXT.remove();
+        } else {
+            CONTEXT.set(type);
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.itmuch.contentcenter.datasource;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * 读写分离切面
+ *  方法上有 @ReadFromReplica 时走从库，最先执行，保证在事务获取连接之前设置好数据源
+ *  以下情况仍然走主库：
+ *   1. 外层已经指定了数据源，保持外层的选择
+ *   2. 在读写事务中调用，事务的连接已经从主库获取，和它保持一致
+ *   3. 当前用户刚写过数据，见 ReadYourWritesTracker
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class DataSourceRoutingAspect {
+
+    private final ReadYourWritesTracker readYourWritesTracker;
+
+    @Around("@annotation(com.itmuch.contentcenter.datasource.ReadFromReplica)")
+    public Object route(ProceedingJoinPoint point) throws Throwable {
+        DataSourceType previous = DataSourceContextHolder.get();
+        if (previous == null) {
+            boolean inWriteTransaction = TransactionSynchronizationManager.isActualTransactionActive()
+                    && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+            DataSourceContextHolder.set(
+                    inWriteTransaction || this.readYourWritesTracker.recentlyWrote(this.currentUserId())
+                            ? DataSourceType.PRIMARY
+                            : DataSourceType.REPLICA
+            );
+        }
+        try {
+            return point.proceed();
+        } finally {
+            DataSourceContextHolder.set(previous);
+        }
+    }
+
+    /**
+     * 当前用户id：@CheckLogin 和 ShareController 解析 token 后放在 request attribute 中，这里不再解析 token
+     * @return
+     */
+    private Integer currentUserId() {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (!(requestAttributes instanceof ServletRequestAttributes)) {
+            return null;
+        }
+        HttpServletRequest request = ((ServletRequestAttributes) requestAttributes).getRequest();
+        Object id = request.getAttribute("id");
+        return id instanceof Integer ? (Integer) id : null;
+    }
+
+}
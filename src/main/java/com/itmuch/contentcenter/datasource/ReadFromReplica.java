@@ -0,0 +1,15 @@
+package com.itmuch.contentcenter.datasource;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标注只读方法，方法内的查询走从库
+ *  当前用户刚写过数据(复制可能还没追上)时仍然走主库，见 ReadYourWritesTracker
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReadFromReplica {
+}
@@ -0,0 +1,128 @@
+package com.itmuch.contentcenter.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 记录最近写过数据的用户
+ *  在主从复制延迟窗口内，这些用户的只读查询仍然走主库，保证能读到自己刚写的数据
+ *
+ * 窗口 = read-your-writes-millis + ReplicaLagMonitor 测得的从库延迟，最多 read-your-writes-max-millis；
+ *  从库延迟未知(复制中断、查询失败)时取最大值。读取时用当前的窗口判断，写入后延迟变大也能覆盖
+ * 写入时间除了记在本实例，还写入 cookie(rw-at = 用户id.毫秒时间戳)，请求落到其他实例时也能读到自己的写入；
+ *  没有请求上下文的写入(如异步兑换)只记在本实例
+ */
+@Component
+public class ReadYourWritesTracker {
+
+    static final String COOKIE_NAME = "rw-at";
+
+    private final long minMillis;
+
+    private final long maxMillis;
+
+    /**
+     * userId -> 最近一次写入的时间
+     */
+    private final Cache<Integer, Long> recentWriters;
+
+    private volatile long windowMillis;
+
+    public ReadYourWritesTracker(@Value("${datasource-routing.read-your-writes-millis:2000}") long minMillis,
+                                 @Value("${datasource-routing.read-your-writes-max-millis:60000}") long maxMillis) {
+        this.minMillis = minMillis;
+        this.maxMillis = Math.max(minMillis, maxMillis);
+        this.windowMillis = minMillis;
+        this.recentWriters = Caffeine.newBuilder()
+                .maximumSize(100000)
+                .expireAfterWrite(this.maxMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    public void markWrite(Integer userId) {
+        if (userId == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        this.recentWriters.put(userId, now);
+
+        HttpServletResponse response = currentResponse();
+        if (response != null && !response.isCommitted()) {
+            Cookie cookie = new Cookie(COOKIE_NAME, userId + "." + now);
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) TimeUnit.MILLISECONDS.toSeconds(this.maxMillis));
+            response.addCookie(cookie);
+        }
+    }
+
+    public boolean recentlyWrote(Integer userId) {
+        if (userId == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        Long writtenAt = this.recentWriters.getIfPresent(userId);
+        Long cookieWrittenAt = cookieWrittenAt(userId);
+        // cookie 时间戳来自其他实例，时钟不一致时也不会超过 maxMillis
+        if (cookieWrittenAt != null && cookieWrittenAt <= now + this.maxMillis
+                && (writtenAt == null || cookieWrittenAt > writtenAt)) {
+            writtenAt = cookieWrittenAt;
+        }
+        return writtenAt != null && now - writtenAt < this.windowMillis;
+    }
+
+    /**
+     * ReplicaLagMonitor 测得从库延迟后调用
+     * @param lagMillis 从库延迟，null 表示未知
+     */
+    public void onReplicaLag(Long lagMillis) {
+        this.windowMillis = lagMillis == null
+                ? this.maxMillis
+                : Math.min(this.minMillis + lagMillis, this.maxMillis);
+    }
+
+    public long getWindowMillis() {
+        return this.windowMillis;
+    }
+
+    /**
+     * 当前请求 cookie 中该用户的写入时间，不是该用户的或格式不对时返回 null
+     */
+    private static Long cookieWrittenAt(Integer userId) {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (!(requestAttributes instanceof ServletRequestAttributes)) {
+            return null;
+        }
+        Cookie cookie = WebUtils.getCookie(((ServletRequestAttributes) requestAttributes).getRequest(), COOKIE_NAME);
+        if (cookie == null || cookie.getValue() == null) {
+            return null;
+        }
+        String[] parts = cookie.getValue().split("\\.");
+        if (parts.length != 2 || !parts[0].equals(String.valueOf(userId))) {
+            return null;
+        }
+        try {
+            return Long.valueOf(parts[1]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static HttpServletResponse currentResponse() {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        return requestAttributes instanceof ServletRequestAttributes
+                ? ((ServletRequestAttributes) requestAttributes).getResponse()
+                : null;
+    }
+
+}
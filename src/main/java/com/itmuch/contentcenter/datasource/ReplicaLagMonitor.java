@@ -0,0 +1,55 @@
+package com.itmuch.contentcenter.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 定时在从库上执行 SHOW SLAVE STATUS，把 Seconds_Behind_Master 交给 ReadYourWritesTracker 计算读己之写的窗口
+ *  Seconds_Behind_Master 精确到秒，多加 1 秒；为 NULL(复制线程停止)或查询失败时视为延迟未知
+ *  只在配置了从库(DataSourceRoutingConfiguration 生效)时创建
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ReadYourWritesTracker readYourWritesTracker;
+
+    public ReplicaLagMonitor(DataSource replicaDataSource, ReadYourWritesTracker readYourWritesTracker) {
+        this.jdbcTemplate = new JdbcTemplate(replicaDataSource);
+        this.readYourWritesTracker = readYourWritesTracker;
+    }
+
+    @Scheduled(fixedDelayString = "${datasource-routing.lag-check-millis:1000}")
+    public void check() {
+        this.readYourWritesTracker.onReplicaLag(this.measure());
+    }
+
+    /**
+     * @return 从库延迟，单位毫秒，未知时返回 null
+     */
+    Long measure() {
+        try {
+            List<Map<String, Object>> rows = this.jdbcTemplate.queryForList("SHOW SLAVE STATUS");
+            if (rows.isEmpty()) {
+                log.warn("从库没有复制状态，读己之写按最大窗口处理");
+                return null;
+            }
+            Object secondsBehindMaster = rows.get(0).get("Seconds_Behind_Master");
+            if (!(secondsBehindMaster instanceof Number)) {
+                log.warn("从库复制线程未运行，读己之写按最大窗口处理");
+                return null;
+            }
+            return (((Number) secondsBehindMaster).longValue() + 1) * 1000;
+        } catch (RuntimeException e) {
+            log.warn("查询从库延迟失败，读己之写按最大窗口处理", e);
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.itmuch.contentcenter.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * 根据 DataSourceContextHolder 路由到主库或从库
+ */
+public class RoutingDataSource extends AbstractRoutingDataSource {
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return DataSourceContextHolder.get();
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.itmuch.contentcenter.domain.dto.content;
+
+import com.itmuch.contentcenter.domain.enums.AuditStatusEnum;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 批量审核
+ */
+@Data
+public class ShareBatchAuditDTO {
+
+    /**
+     * 审核的分享id
+     */
+    private List<Integer> ids;
+    /**
+     * 审核状态
+     */
+    private AuditStatusEnum auditStatusEnum;
+    /**
+     * 原因
+     */
+    private String reason;
+
+}
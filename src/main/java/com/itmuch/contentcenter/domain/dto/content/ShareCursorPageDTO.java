@@ -0,0 +1,34 @@
+package com.itmuch.contentcenter.domain.dto.content;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 游标分页结果，不返回总数
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShareCursorPageDTO<T> {
+
+    /**
+     * 本页数据
+     */
+    private List<T> list;
+
+    /**
+     * 下一页游标，作为下次请求的 after 参数；没有下一页时为 null
+     */
+    private String nextCursor;
+
+    /**
+     * 是否还有下一页
+     */
+    private Boolean hasNextPage;
+
+}
@@ -1,5 +1,6 @@
 package com.itmuch.contentcenter.domain.dto.content;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -93,4 +94,10 @@ public class ShareDTO {
      */
     private String wxNickname;
 
+    /**
+     * 是否由降级数据(用户中心降级返回的默认用户)组装，降级数据不缓存
+     */
+    @JsonIgnore
+    private boolean degraded;
+
 }
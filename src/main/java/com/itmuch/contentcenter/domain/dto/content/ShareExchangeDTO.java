@@ -0,0 +1,37 @@
+package com.itmuch.contentcenter.domain.dto.content;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * 异步兑换的受理结果/处理状态
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ShareExchangeDTO {
+
+    /**
+     * 查询凭证，已经兑换过时为空
+     */
+    private Integer id;
+
+    private Integer shareId;
+
+    /**
+     * PENDING,SUCCESS,FAILED
+     */
+    private String status;
+
+    private String reason;
+
+    private Date createTime;
+
+    private Date updateTime;
+
+}
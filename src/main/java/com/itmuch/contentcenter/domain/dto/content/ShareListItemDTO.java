@@ -0,0 +1,70 @@
+package com.itmuch.contentcenter.domain.dto.content;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * 分享列表项，只包含列表页展示的字段
+ *  summary / reason 等详情字段不查询；downloadUrl 只有当前用户兑换过才查询
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShareListItemDTO {
+
+    /**
+     * id
+     */
+    private Integer id;
+
+    /**
+     * 发布人id
+     */
+    private Integer userId;
+
+    /**
+     * 标题
+     */
+    private String title;
+
+    /**
+     * 创建时间
+     */
+    private Date createTime;
+
+    /**
+     * 是否原创 0:否 1:是
+     */
+    private Boolean isOriginal;
+
+    /**
+     * 作者
+     */
+    private String author;
+
+    /**
+     * 封面
+     */
+    private String cover;
+
+    /**
+     * 价格（需要的积分）
+     */
+    private Integer price;
+
+    /**
+     * 下载数
+     */
+    private Integer buyCount;
+
+    /**
+     * 下载地址，只有当前用户兑换过才有值
+     */
+    private String downloadUrl;
+
+}
@@ -0,0 +1,30 @@
+package com.itmuch.contentcenter.domain.dto.messaging;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * rocketmq_transaction_log 的一个分区(information_schema.partitions)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransactionLogPartitionDTO {
+
+    /**
+     * 分区名，如 p20200101
+     */
+    private String name;
+    /**
+     * VALUES LESS THAN 的值：TO_DAYS(日期) 或 MAXVALUE
+     */
+    private String description;
+    /**
+     * 估算行数
+     */
+    private Long tableRows;
+
+}
@@ -22,5 +22,9 @@ public class UserAddBonusMsgDTO {
      * 加多少积分
      */
     private Integer bonus;
+    /**
+     * 发件箱记录id，消费方按它去重；事务半消息中为 null
+     */
+    private Integer outboxId;
 
 }
@@ -0,0 +1,34 @@
+package com.itmuch.contentcenter.domain.dto.user;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量加减积分的一项
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserAddBonusItemDTO {
+
+    /**
+     * 请求id，用户中心按它去重，重复提交同一个请求id只生效一次
+     */
+    private String requestId;
+
+    /**
+     * 撤销的请求id，为空表示普通的加减积分
+     *  被撤销的请求生效过才退回它的积分(bonus)；还没到达的，以后到达也不再生效
+     */
+    private String cancelRequestId;
+
+    private Integer userId;
+    /**
+     * 积分，负数表示扣减
+     */
+    private Integer bonus;
+
+}
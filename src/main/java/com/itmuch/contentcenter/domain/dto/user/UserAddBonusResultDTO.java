@@ -0,0 +1,29 @@
+package com.itmuch.contentcenter.domain.dto.user;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量加减积分的一项的结果
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserAddBonusResultDTO {
+
+    private String requestId;
+
+    private Integer userId;
+    /**
+     * 处理后的积分
+     */
+    private Integer bonus;
+    /**
+     * 是否生效，积分不够扣减时为 false，不会扣减
+     */
+    private Boolean success;
+
+}
@@ -1,5 +1,6 @@
 package com.itmuch.contentcenter.domain.dto.user;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 
 import java.util.Date;
@@ -46,4 +47,11 @@ public class UserDTO {
      * 积分
      */
     private Integer bonus;
+
+    /**
+     * 是否是降级(FallbackFactory)返回的默认用户，不是用户中心的真实数据
+     */
+    @JsonIgnore
+    private boolean fallback;
+
 }
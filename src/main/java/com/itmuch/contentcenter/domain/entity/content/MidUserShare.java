@@ -25,4 +25,10 @@ public class MidUserShare {
      */
     @Column(name = "user_id")
     private Integer userId;
+
+    /**
+     * 兑换请求的幂等键(请求头 Idempotency-Key)，(user_id, idempotency_key) 唯一
+     */
+    @Column(name = "idempotency_key")
+    private String idempotencyKey;
 }
\ No newline at end of file
@@ -0,0 +1,71 @@
+package com.itmuch.contentcenter.domain.entity.content;
+
+import javax.persistence.*;
+
+import lombok.*;
+
+import java.util.Date;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "share_exchange")
+public class ShareExchange {
+    /**
+     * id，即兑换受理后返回给客户端的查询凭证
+     */
+    @Id
+    @GeneratedValue(generator = "JDBC")
+    private Integer id;
+
+    /**
+     * user.id
+     */
+    @Column(name = "user_id")
+    private Integer userId;
+
+    /**
+     * share.id
+     */
+    @Column(name = "share_id")
+    private Integer shareId;
+
+    /**
+     * 受理时的价格(积分)
+     */
+    private Integer price;
+
+    /**
+     * 状态 PENDING,SUCCESS,FAILED
+     */
+    private String status;
+
+    /**
+     * 失败原因
+     */
+    private String reason;
+
+    /**
+     * 创建时间
+     */
+    @Column(name = "create_time")
+    private Date createTime;
+
+    /**
+     * 修改时间
+     */
+    @Column(name = "update_time")
+    private Date updateTime;
+
+    /**
+     * 处理中的实例
+     */
+    private String owner;
+
+    /**
+     * 处理租约到期时间，到期还是 PENDING 的由其他实例接管
+     */
+    @Column(name = "locked_until")
+    private Date lockedUntil;
+}
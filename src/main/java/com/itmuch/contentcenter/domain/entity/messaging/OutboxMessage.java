@@ -0,0 +1,54 @@
+package com.itmuch.contentcenter.domain.entity.messaging;
+
+import javax.persistence.*;
+
+import lombok.*;
+
+import java.util.Date;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "outbox_message")
+public class OutboxMessage {
+    /**
+     * id
+     */
+    @Id
+    @GeneratedValue(generator = "JDBC")
+    private Integer id;
+
+    /**
+     * 消息内容(JSON)
+     */
+    private String payload;
+
+    /**
+     * 是否已发送
+     */
+    private Boolean sent;
+
+    /**
+     * 创建时间
+     */
+    @Column(name = "create_time")
+    private Date createTime;
+
+    /**
+     * 发送时间
+     */
+    @Column(name = "sent_time")
+    private Date sentTime;
+
+    /**
+     * 认领者，每次认领生成一个新的值
+     */
+    private String owner;
+
+    /**
+     * 认领到期时间，到期还没有发送的可以被其他实例重新认领
+     */
+    @Column(name = "locked_until")
+    private Date lockedUntil;
+}
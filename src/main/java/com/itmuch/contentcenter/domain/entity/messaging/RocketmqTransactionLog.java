@@ -4,6 +4,8 @@ import javax.persistence.*;
 
 import lombok.*;
 
+import java.util.Date;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -27,4 +29,10 @@ public class RocketmqTransactionLog {
      * 日志
      */
     private String log;
+
+    /**
+     * 创建时间，按它分区和清理
+     */
+    @Column(name = "create_time")
+    private Date createTime;
 }
\ No newline at end of file
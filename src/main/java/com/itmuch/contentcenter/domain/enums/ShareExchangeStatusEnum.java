@@ -0,0 +1,24 @@
+package com.itmuch.contentcenter.domain.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum ShareExchangeStatusEnum {
+
+    /**
+     * 已受理，等待扣减积分
+     */
+    PENDING,
+    /**
+     * 兑换成功
+     */
+    SUCCESS,
+    /**
+     * 兑换失败
+     */
+    FAILED
+
+
+}
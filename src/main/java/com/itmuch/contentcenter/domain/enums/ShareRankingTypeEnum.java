@@ -0,0 +1,20 @@
+package com.itmuch.contentcenter.domain.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum ShareRankingTypeEnum {
+
+    /**
+     * 兑换最多
+     */
+    MOST_BOUGHT,
+    /**
+     * 最新
+     */
+    NEWEST
+
+
+}
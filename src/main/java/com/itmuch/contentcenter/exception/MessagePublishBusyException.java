@@ -0,0 +1,12 @@
+package com.itmuch.contentcenter.exception;
+
+/**
+ * 异步发送消息的缓冲区已满，客户端应稍后重试
+ */
+public class MessagePublishBusyException extends RuntimeException {
+
+    public MessagePublishBusyException(String destination) {
+        super("消息发送排队已满，请稍后重试！destination：" + destination);
+    }
+
+}
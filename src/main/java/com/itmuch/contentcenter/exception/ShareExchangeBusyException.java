@@ -0,0 +1,12 @@
+package com.itmuch.contentcenter.exception;
+
+/**
+ * 异步兑换排队已满，客户端应稍后重试
+ */
+public class ShareExchangeBusyException extends RuntimeException {
+
+    public ShareExchangeBusyException() {
+        super("兑换排队人数过多，请稍后重试！");
+    }
+
+}
@@ -0,0 +1,19 @@
+package com.itmuch.contentcenter.exception;
+
+/**
+ * 分享不存在
+ *  继承 IllegalArgumentException 兼容原有的 "该分享不存在！" 处理
+ *  不存在的 id 可能被大量扫描，不填充异常栈，避免每次都分配栈信息
+ */
+public class ShareNotFoundException extends IllegalArgumentException {
+
+    public ShareNotFoundException(Integer id) {
+        super("该分享不存在！id：" + id);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+
+}
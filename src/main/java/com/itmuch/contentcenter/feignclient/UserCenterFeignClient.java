@@ -2,6 +2,8 @@ package com.itmuch.contentcenter.feignclient;
 
 import com.itmuch.contentcenter.configuration.UserCenterFeignClientConfiguration;
 import com.itmuch.contentcenter.domain.dto.user.UserAddBonseDTO;
+import com.itmuch.contentcenter.domain.dto.user.UserAddBonusItemDTO;
+import com.itmuch.contentcenter.domain.dto.user.UserAddBonusResultDTO;
 import com.itmuch.contentcenter.domain.dto.user.UserDTO;
 import com.itmuch.contentcenter.feignclient.fallback.UserCenterFeignClientFallback;
 import com.itmuch.contentcenter.feignclient.fallbackfactory.UserCenterFeignClientFallbackFactory;
@@ -11,6 +13,10 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Feign 调用实现
@@ -38,6 +44,26 @@ public interface UserCenterFeignClient {
     @GetMapping("/users/{id}")
     UserDTO findById(@PathVariable Integer id);
 
+    /**
+     * 批量查询用户
+     * http://user-center/users/batch?ids=1&ids=2
+     * @param ids
+     * @return 只包含存在的用户，顺序不保证
+     */
+    @GetMapping("/users/batch")
+    List<UserDTO> findByIds(@RequestParam("ids") Collection<Integer> ids);
+
     @PutMapping("/users/add-bonus")
     UserDTO addBonus(@RequestBody UserAddBonseDTO userAddBonseDTO);
+
+    /**
+     * 批量加减积分
+     * http://user-center/users/add-bonus/batch
+     *  按顺序逐项处理，积分够不够和扣减在用户中心原子完成，不够扣减的项不生效；同一个 requestId 只生效一次
+     *  cancelRequestId 不为空的项撤销该请求，见 UserAddBonusItemDTO
+     * @param items
+     * @return 和 items 一一对应的结果
+     */
+    @PutMapping("/users/add-bonus/batch")
+    List<UserAddBonusResultDTO> addBonusBatch(@RequestBody List<UserAddBonusItemDTO> items);
 }
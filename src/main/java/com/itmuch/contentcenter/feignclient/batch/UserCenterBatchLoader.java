@@ -0,0 +1,190 @@
+package com.itmuch.contentcenter.feignclient.batch;
+
+import com.itmuch.contentcenter.cache.SingleFlight;
+import com.itmuch.contentcenter.domain.dto.user.UserDTO;
+import com.itmuch.contentcenter.feignclient.UserCenterFeignClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * DataLoader 风格的用户查询合并器
+ *
+ * 在一个很短的窗口内(或攒够 maxBatchSize 个)收集并发的 findById 请求，
+ * 合并成一次 UserCenterFeignClient.findByIds 批量调用，再把结果按 id 分发给各个调用方。
+ * 同一窗口内重复的 id 共享同一个结果；批量请求返回前，相同 id 的新请求也会等待这次结果(singleflight)。
+ */
+@Slf4j
+@Component
+public class UserCenterBatchLoader implements DisposableBean {
+
+    private final UserCenterFeignClient userCenterFeignClient;
+
+    private final UserCenterBatchProperties properties;
+
+    private final ScheduledExecutorService executor;
+
+    private final SingleFlight<Integer, UserDTO> singleFlight;
+
+    private final Object lock = new Object();
+
+    /**
+     * 当前窗口内等待发送的请求，受 lock 保护
+     */
+    private Map<Integer, CompletableFuture<UserDTO>> pending = new LinkedHashMap<>();
+
+    private ScheduledFuture<?> scheduledFlush;
+
+    public UserCenterBatchLoader(UserCenterFeignClient userCenterFeignClient,
+                                 UserCenterBatchProperties properties,
+                                 MeterRegistry meterRegistry) {
+        this.userCenterFeignClient = userCenterFeignClient;
+        this.properties = properties;
+        this.singleFlight = new SingleFlight<>("user", meterRegistry);
+        this.executor = Executors.newScheduledThreadPool(
+                properties.getThreads(),
+                new CustomizableThreadFactory("user-batch-loader-")
+        );
+    }
+
+    /**
+     * 查询单个用户，阻塞直到所在批次返回
+     * @param id
+     * @return
+     */
+    public UserDTO load(Integer id) {
+        return this.await(this.loadAsync(id));
+    }
+
+    /**
+     * 批量查询用户，结果按 id 返回，不存在的 id 不在结果中
+     * @param ids
+     * @return
+     */
+    public Map<Integer, UserDTO> loadAll(Collection<Integer> ids) {
+        Map<Integer, CompletableFuture<UserDTO>> futures = new LinkedHashMap<>();
+        ids.forEach(id -> futures.computeIfAbsent(id, this::loadAsync));
+
+        Map<Integer, UserDTO> result = new HashMap<>(futures.size());
+        futures.forEach((id, future) -> {
+            UserDTO userDTO = this.await(future);
+            if (userDTO != null) {
+                result.put(id, userDTO);
+            }
+        });
+        return result;
+    }
+
+    public CompletableFuture<UserDTO> loadAsync(Integer id) {
+        return this.singleFlight.loadAsync(id, this::enqueue);
+    }
+
+    /**
+     * 加入当前窗口，等待批量发送
+     * @param id
+     * @return
+     */
+    private CompletableFuture<UserDTO> enqueue(Integer id) {
+        Map<Integer, CompletableFuture<UserDTO>> batch = null;
+        CompletableFuture<UserDTO> future;
+        synchronized (this.lock) {
+            future = this.pending.get(id);
+            if (future != null) {
+                return future;
+            }
+            future = new CompletableFuture<>();
+            this.pending.put(id, future);
+
+            if (this.pending.size() >= this.properties.getMaxBatchSize()) {
+                // 攒够一批，立即发送
+                batch = this.drain();
+            } else if (this.scheduledFlush == null) {
+                // 窗口内第一个请求，定时发送
+                this.scheduledFlush = this.executor.schedule(
+                        this::flush, this.properties.getWindowMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (batch != null) {
+            Map<Integer, CompletableFuture<UserDTO>> toDispatch = batch;
+            this.executor.execute(() -> this.dispatch(toDispatch));
+        }
+        return future;
+    }
+
+    private void flush() {
+        Map<Integer, CompletableFuture<UserDTO>> batch;
+        synchronized (this.lock) {
+            batch = this.drain();
+        }
+        this.dispatch(batch);
+    }
+
+    /**
+     * 取出当前窗口的请求，需要在 lock 内调用
+     * @return
+     */
+    private Map<Integer, CompletableFuture<UserDTO>> drain() {
+        Map<Integer, CompletableFuture<UserDTO>> batch = this.pending;
+        this.pending = new LinkedHashMap<>();
+        if (this.scheduledFlush != null) {
+            this.scheduledFlush.cancel(false);
+            this.scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void dispatch(Map<Integer, CompletableFuture<UserDTO>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            List<UserDTO> users = this.userCenterFeignClient.findByIds(new ArrayList<>(batch.keySet()));
+            log.debug("合并查询用户 {} 个，返回 {} 个", batch.size(), users.size());
+
+            Map<Integer, UserDTO> byId = new HashMap<>(users.size());
+            users.forEach(user -> byId.put(user.getId(), user));
+            // 不存在的用户返回 null
+            batch.forEach((id, future) -> future.complete(byId.get(id)));
+        } catch (Exception e) {
+            log.warn("合并查询用户失败", e);
+            batch.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    private UserDTO await(CompletableFuture<UserDTO> future) {
+        try {
+            return future.get(this.properties.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("查询用户被中断！", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("查询用户失败！", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("查询用户超时！", e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        this.flush();
+        this.executor.shutdown();
+    }
+
+}
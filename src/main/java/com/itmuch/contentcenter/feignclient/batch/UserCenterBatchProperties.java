@@ -0,0 +1,36 @@
+package com.itmuch.contentcenter.feignclient.batch;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * user-center 批量查询合并配置
+ *  对应 application.yml 中的 user-center-batch
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "user-center-batch")
+public class UserCenterBatchProperties {
+
+    /**
+     * 合并窗口，单位毫秒：第一个请求到达后最多等待多久发出批量请求
+     */
+    private long windowMillis = 5;
+
+    /**
+     * 单批最大 id 数，达到后立即发出，不再等待窗口结束
+     */
+    private int maxBatchSize = 100;
+
+    /**
+     * 调用方等待结果的超时时间，单位毫秒
+     */
+    private long timeoutMillis = 3000;
+
+    /**
+     * 发送批量请求的线程数
+     */
+    private int threads = 4;
+
+}
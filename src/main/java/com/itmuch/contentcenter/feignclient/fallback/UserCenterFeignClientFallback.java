@@ -1,21 +1,44 @@
 package com.itmuch.contentcenter.feignclient.fallback;
 
 import com.itmuch.contentcenter.domain.dto.user.UserAddBonseDTO;
+import com.itmuch.contentcenter.domain.dto.user.UserAddBonusItemDTO;
+import com.itmuch.contentcenter.domain.dto.user.UserAddBonusResultDTO;
 import com.itmuch.contentcenter.domain.dto.user.UserDTO;
 import com.itmuch.contentcenter.feignclient.UserCenterFeignClient;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
 @Component
 public class UserCenterFeignClientFallback implements UserCenterFeignClient {
     @Override
     public UserDTO findById(Integer id) {
         UserDTO userDTO = new UserDTO();
         userDTO.setWxNickname("Fallback一个默认用户");
+        userDTO.setFallback(true);
         return userDTO;
     }
 
+    @Override
+    public List<UserDTO> findByIds(Collection<Integer> ids) {
+        return ids.stream()
+                .map(id -> {
+                    UserDTO userDTO = this.findById(id);
+                    userDTO.setId(id);
+                    return userDTO;
+                })
+                .collect(Collectors.toList());
+    }
+
     @Override
     public UserDTO addBonus(UserAddBonseDTO userAddBonseDTO) {
         return null;
     }
+
+    @Override
+    public List<UserAddBonusResultDTO> addBonusBatch(List<UserAddBonusItemDTO> items) {
+        return null;
+    }
 }
@@ -1,12 +1,18 @@
 package com.itmuch.contentcenter.feignclient.fallbackfactory;
 
 import com.itmuch.contentcenter.domain.dto.user.UserAddBonseDTO;
+import com.itmuch.contentcenter.domain.dto.user.UserAddBonusItemDTO;
+import com.itmuch.contentcenter.domain.dto.user.UserAddBonusResultDTO;
 import com.itmuch.contentcenter.domain.dto.user.UserDTO;
 import com.itmuch.contentcenter.feignclient.UserCenterFeignClient;
 import feign.hystrix.FallbackFactory;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
 /**
  * XXX_FallbackFactory 需要实现 FallbackFactory<> 接口
  *  接口泛型是需要实现的业务接口
@@ -26,13 +32,34 @@ public class UserCenterFeignClientFallbackFactory
                 log.warn("远程调用被限流/降级了", cause);
                 UserDTO userDTO = new UserDTO();
                 userDTO.setWxNickname("FallbackFactory一个默认用户");
+                userDTO.setFallback(true);
                 return userDTO;
             }
 
+            @Override
+            public List<UserDTO> findByIds(Collection<Integer> ids) {
+                log.warn("远程批量调用被限流/降级了", cause);
+                return ids.stream()
+                        .map(id -> {
+                            UserDTO userDTO = new UserDTO();
+                            userDTO.setId(id);
+                            userDTO.setWxNickname("FallbackFactory一个默认用户");
+                            userDTO.setFallback(true);
+                            return userDTO;
+                        })
+                        .collect(Collectors.toList());
+            }
+
             @Override
             public UserDTO addBonus(UserAddBonseDTO userAddBonseDTO) {
                 return null;
             }
+
+            @Override
+            public List<UserAddBonusResultDTO> addBonusBatch(List<UserAddBonusItemDTO> items) {
+                log.warn("远程批量加减积分被限流/降级了", cause);
+                return null;
+            }
         };
     }
 
@@ -14,6 +14,10 @@ public class TokenRelayRequestInterceptor implements RequestInterceptor {
     public void apply(RequestTemplate template) {
         // 1.获取 token
         RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        // 后台线程(如批量合并请求)发起的调用没有 request，不需要传递 token
+        if (!(requestAttributes instanceof ServletRequestAttributes)) {
+            return;
+        }
         ServletRequestAttributes attributes = (ServletRequestAttributes) requestAttributes;
         HttpServletRequest request = attributes.getRequest();
 
@@ -0,0 +1,280 @@
+package com.itmuch.contentcenter.rocketmq;
+
+import com.itmuch.contentcenter.exception.MessagePublishBusyException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.producer.SendCallback;
+import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.client.producer.SendStatus;
+import org.apache.rocketmq.spring.core.RocketMQTemplate;
+import org.apache.rocketmq.spring.support.RocketMQHeaders;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.stream.config.BindingProperties;
+import org.springframework.cloud.stream.config.BindingServiceProperties;
+import org.springframework.integration.support.context.NamedComponent;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 异步发送普通消息：Source / MySource / MyTagsSource 的 output() 可以通过这里发送
+ *  事务消息(MyMqSource.output())不要通过这里发送：本地事务在发送线程中执行，会在发送线程上排队，必须同步发送
+ *
+ * 每个 destination(MessageChannel) 一个有界缓冲区和 sendersPerDestination 个发送线程，
+ * 发送线程凑够 batchSize 条或等待 lingerMillis 后把这一批发送出去，调用方的线程(如 Tomcat 线程)不用等待 broker 返回。
+ * 每条消息返回一个 CompletableFuture，在发送回调中完成。
+ *  Stream 绑定的 channel：按绑定的 destination(topic，有 TAGS 头时为 topic:tags) 用 RocketMQTemplate#asyncSend 发送，
+ *   一批消息不用逐条等待 broker 返回，每个 destination 最多 maxInFlightPerDestination 条在途，
+ *   吞吐量不再受 1 / RTT 限制；发送按顺序发出，但完成顺序不保证
+ *  其他 channel(没有绑定)：仍在发送线程中逐条同步 send
+ * 背压：缓冲区满时最多等待 offerTimeoutMillis，仍然没有空间则抛 MessagePublishBusyException；在途消息达到上限时发送线程等待
+ * 关闭：不再受理新消息，已缓冲的消息发送完、在途消息回调完成(最多等 sendTimeoutMillis)后退出；超时仍未发送的消息异常完成
+ *  受理(创建 Lane、放入缓冲区)和关闭用同一把读写锁，关闭之后不会再有消息进入缓冲区，也不会再创建 Lane
+ */
+@Slf4j
+@Component
+public class AsyncMessagePublisher implements DisposableBean {
+
+    private final AsyncPublisherProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final RocketMQTemplate rocketMQTemplate;
+
+    private final BindingServiceProperties bindingServiceProperties;
+
+    private final Map<MessageChannel, Lane> lanes = new ConcurrentHashMap<>();
+
+    private final ExecutorService senders;
+
+    /**
+     * publish 持有读锁，destroy 持有写锁修改 running
+     */
+    private final ReadWriteLock lifecycle = new ReentrantReadWriteLock();
+
+    private volatile boolean running = true;
+
+    public AsyncMessagePublisher(AsyncPublisherProperties properties, MeterRegistry meterRegistry,
+                                 RocketMQTemplate rocketMQTemplate, BindingServiceProperties bindingServiceProperties) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.rocketMQTemplate = rocketMQTemplate;
+        this.bindingServiceProperties = bindingServiceProperties;
+        this.senders = Executors.newCachedThreadPool(new CustomizableThreadFactory("async-publisher-"));
+    }
+
+    /**
+     * 异步发送
+     * @param channel 如 source.output()
+     * @param message
+     * @return 发送结果，同 MessageChannel#send 的返回值；发送异常时异常完成
+     */
+    public CompletableFuture<Boolean> publish(MessageChannel channel, Message<?> message) {
+        this.lifecycle.readLock().lock();
+        try {
+            if (!this.running) {
+                throw new IllegalStateException("消息发送已关闭！");
+            }
+            Lane lane = this.lanes.computeIfAbsent(channel, this::start);
+            Pending pending = new Pending(message);
+            boolean offered;
+            try {
+                offered = lane.queue.offer(pending, this.properties.getOfferTimeoutMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MessagePublishBusyException(lane.name);
+            }
+            if (!offered) {
+                throw new MessagePublishBusyException(lane.name);
+            }
+            return pending.future;
+        } finally {
+            this.lifecycle.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        // 等正在受理的 publish 完成，之后发送线程看到 running = false 时缓冲区里已经是全部消息
+        this.lifecycle.writeLock().lock();
+        try {
+            this.running = false;
+        } finally {
+            this.lifecycle.writeLock().unlock();
+        }
+        this.senders.shutdown();
+        if (!this.senders.awaitTermination(10, TimeUnit.SECONDS)) {
+            this.senders.shutdownNow();
+            this.senders.awaitTermination(1, TimeUnit.SECONDS);
+        }
+        // 等在途消息的回调，超时没有发送的消息异常完成，调用方不会一直等待
+        IllegalStateException closed = new IllegalStateException("消息发送已关闭！");
+        for (Lane lane : this.lanes.values()) {
+            int permits = this.properties.getMaxInFlightPerDestination();
+            if (lane.inFlight.tryAcquire(permits, this.properties.getSendTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                lane.inFlight.release(permits);
+            } else {
+                log.warn("关闭时仍有消息在途，destination = {}", lane.name);
+            }
+            Pending pending;
+            while ((pending = lane.queue.poll()) != null) {
+                pending.future.completeExceptionally(closed);
+            }
+        }
+    }
+
+    private Lane start(MessageChannel channel) {
+        String name = channel instanceof NamedComponent && ((NamedComponent) channel).getComponentName() != null
+                ? ((NamedComponent) channel).getComponentName()
+                : channel.toString();
+        BindingProperties binding = this.bindingServiceProperties.getBindings().get(name);
+        String destination = binding != null ? binding.getDestination() : null;
+        Lane lane = new Lane(channel, name, destination, new ArrayBlockingQueue<>(this.properties.getCapacity()),
+                new Semaphore(this.properties.getMaxInFlightPerDestination()));
+        this.meterRegistry.gauge("async.publisher.queued", Tags.of("destination", name), lane.queue, BlockingQueue::size);
+        for (int i = 0; i < this.properties.getSendersPerDestination(); i++) {
+            this.senders.execute(() -> this.run(lane));
+        }
+        return lane;
+    }
+
+    private void run(Lane lane) {
+        List<Pending> batch = new ArrayList<>(this.properties.getBatchSize());
+        // 关闭后把缓冲区中剩余的消息发送完再退出
+        while (this.running || !lane.queue.isEmpty()) {
+            try {
+                batch.clear();
+                if (this.drain(lane.queue, batch)) {
+                    this.send(lane, batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.forEach(pending -> pending.future.completeExceptionally(e));
+                lane.queue.forEach(pending -> pending.future.completeExceptionally(e));
+                return;
+            }
+        }
+    }
+
+    /**
+     * 攒一批：等到第一条后，最多再等 lingerMillis 或攒够 batchSize 条
+     * @return 是否攒到了
+     */
+    private boolean drain(BlockingQueue<Pending> queue, List<Pending> batch) throws InterruptedException {
+        Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return false;
+        }
+        batch.add(first);
+        int batchSize = this.properties.getBatchSize();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.properties.getLingerMillis());
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                break;
+            }
+            Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return true;
+    }
+
+    /**
+     * 发送一批，每条消息单独完成，一条失败不影响其他消息
+     */
+    private void send(Lane lane, List<Pending> batch) throws InterruptedException {
+        if (lane.destination == null) {
+            for (Pending pending : batch) {
+                try {
+                    pending.future.complete(lane.channel.send(pending.message, this.properties.getSendTimeoutMillis()));
+                } catch (RuntimeException e) {
+                    log.warn("异步发送消息失败，destination = {}", lane.name, e);
+                    pending.future.completeExceptionally(e);
+                }
+            }
+            return;
+        }
+        for (Pending pending : batch) {
+            // 在途消息达到上限时等待回调释放
+            lane.inFlight.acquire();
+            Object tags = pending.message.getHeaders().get(RocketMQHeaders.TAGS);
+            String destination = tags != null ? lane.destination + ":" + tags : lane.destination;
+            try {
+                this.rocketMQTemplate.asyncSend(destination, pending.message, new SendCallback() {
+                    @Override
+                    public void onSuccess(SendResult sendResult) {
+                        lane.inFlight.release();
+                        pending.future.complete(sendResult.getSendStatus() == SendStatus.SEND_OK);
+                    }
+
+                    @Override
+                    public void onException(Throwable e) {
+                        lane.inFlight.release();
+                        log.warn("异步发送消息失败，destination = {}", destination, e);
+                        pending.future.completeExceptionally(e);
+                    }
+                }, this.properties.getSendTimeoutMillis());
+            } catch (RuntimeException e) {
+                lane.inFlight.release();
+                log.warn("异步发送消息失败，destination = {}", destination, e);
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static class Lane {
+
+        private final MessageChannel channel;
+
+        private final String name;
+
+        /**
+         * 绑定的 topic，没有绑定时为 null
+         */
+        private final String destination;
+
+        private final BlockingQueue<Pending> queue;
+
+        private final Semaphore inFlight;
+
+        Lane(MessageChannel channel, String name, String destination, BlockingQueue<Pending> queue, Semaphore inFlight) {
+            this.channel = channel;
+            this.name = name;
+            this.destination = destination;
+            this.queue = queue;
+            this.inFlight = inFlight;
+        }
+    }
+
+    private static class Pending {
+
+        private final Message<?> message;
+
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        Pending(Message<?> message) {
+            this.message = message;
+        }
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.itmuch.contentcenter.rocketmq;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 异步发送消息配置
+ *  对应 application.yml 中的 async-publisher
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "async-publisher")
+public class AsyncPublisherProperties {
+
+    /**
+     * 每个 destination 最多缓冲多少条消息
+     */
+    private int capacity = 10000;
+
+    /**
+     * 缓冲区满时最多等待多久，超时后拒绝发送(429)，单位毫秒
+     */
+    private long offerTimeoutMillis = 0;
+
+    /**
+     * 每批最多发送多少条
+     */
+    private int batchSize = 100;
+
+    /**
+     * 凑批最多等待多久，单位毫秒
+     */
+    private long lingerMillis = 5;
+
+    /**
+     * 每个 destination 的发送线程数，大于 1 时不保证发送顺序
+     */
+    private int sendersPerDestination = 1;
+
+    /**
+     * 每个 destination 最多多少条消息已发出、还在等 broker 返回
+     */
+    private int maxInFlightPerDestination = 1000;
+
+    /**
+     * 单条消息发送超时，单位毫秒
+     */
+    private long sendTimeoutMillis = 3000;
+
+}
@@ -10,7 +10,15 @@ public interface MyMqSource {
 
     String MY_MQ_OUTPUT = "my-mq-output";
 
+    /**
+     * 发件箱(outbox)模式使用的普通(非事务)消息，和 my-mq-output 发送到同一个 topic
+     */
+    String MY_MQ_OUTBOX_OUTPUT = "my-mq-outbox-output";
+
     @Output(MY_MQ_OUTPUT)
     MessageChannel output();
 
+    @Output(MY_MQ_OUTBOX_OUTPUT)
+    MessageChannel outboxOutput();
+
 }
@@ -1,7 +1,8 @@
 package com.itmuch.contentcenter.rocketmq;
 
-import com.alibaba.fastjson.JSON;
 import com.itmuch.contentcenter.domain.dto.content.ShareAuditDTO;
+import com.itmuch.contentcenter.domain.dto.content.ShareBatchAuditDTO;
+import com.itmuch.contentcenter.rocketmq.codec.MessageCodecs;
 import com.itmuch.contentcenter.service.content.ShareAdminService;
 import com.itmuch.contentcenter.service.content.ShareService;
 import lombok.RequiredArgsConstructor;
@@ -24,46 +25,61 @@ public class NewAddBonusTransactionListener implements RocketMQLocalTransactionL
 
     private final ShareAdminService shareAdminService;
 
+    private final TransactionCheckBackService transactionCheckBackService;
+
+    private final MessageCodecs messageCodecs;
+
     @Override
     public RocketMQLocalTransactionState executeLocalTransaction(Message message, Object arg) {
         // 用来执行本地事务的接口
 
-        // 注意 arg 值为空, dto对象转换成 JsonString 放在了 header 中
+        // arg 是发送时消息头 TRANSACTIONAL_ARG 的值(编码后的 dto)；为空时从该消息头中解码
 
         // 获取 Message
         MessageHeaders headers = message.getHeaders();
 
         // Meaage 的 header 信息
         String transactionId = (String) headers.get(RocketMQHeaders.TRANSACTION_ID);
+
+        // 批量审核：整批在一个本地事务中执行，一起提交或回滚
+        if ("true".equals(headers.get("batch"))) {
+            ShareBatchAuditDTO shareBatchAuditDTO = messageCodecs.decodeArg(arg, headers, ShareBatchAuditDTO.class);
+            transactionCheckBackService.begin(transactionId);
+            boolean committed = false;
+            try {
+                shareAdminService.auditBatchWithRocketMqLog(shareBatchAuditDTO, transactionId);
+                committed = true;
+                return RocketMQLocalTransactionState.COMMIT;
+            } catch (Exception e) {
+                return RocketMQLocalTransactionState.ROLLBACK;
+            } finally {
+                transactionCheckBackService.end(transactionId, committed);
+            }
+        }
+
         Integer shareId = Integer.valueOf((String) headers.get("share_id"));
-        // 获取 dto 的字符串
-        String dtoString = (String) headers.get("dto");
-        // 将字符串进行反序列化
-        ShareAuditDTO shareAuditDTO = JSON.parseObject(dtoString, ShareAuditDTO.class);
+        ShareAuditDTO shareAuditDTO = messageCodecs.decodeArg(arg, headers, ShareAuditDTO.class);
 
         // 处理本地业务
+        transactionCheckBackService.begin(transactionId);
+        boolean committed = false;
         try {
             // shareService.auditByIdInDB(shareId, (ShareAuditDTO) o);
             shareAdminService.auditByIdWithRocketMqLog(shareId, shareAuditDTO, transactionId);
+            committed = true;
             return RocketMQLocalTransactionState.COMMIT;
         } catch (Exception e) {
             return RocketMQLocalTransactionState.ROLLBACK;
+        } finally {
+            transactionCheckBackService.end(transactionId, committed);
         }
     }
 
     @Override
     public RocketMQLocalTransactionState checkLocalTransaction(Message message) {
-        // 用来检查本地事务的接口
-
-        MessageHeaders headers = message.getHeaders();
-        String transactionId = (String) headers.get(RocketMQHeaders.TRANSACTION_ID);
-
-        String flag = shareAdminService.selectHasTransactionLog(transactionId);
-        if ("HAS".equals(flag)) {
-            return RocketMQLocalTransactionState.COMMIT;
-        }
-
-        return RocketMQLocalTransactionState.ROLLBACK;
+        // 用来检查本地事务的接口，单个审核和批量审核都是一条事务日志
+        // 先查本地缓存和布隆过滤器，必要时才查数据库；本地事务可能还在执行时返回 UNKNOWN
+        return transactionCheckBackService.check(message.getHeaders());
     }
 
 }
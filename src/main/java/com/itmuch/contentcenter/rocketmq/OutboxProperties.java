@@ -0,0 +1,46 @@
+package com.itmuch.contentcenter.rocketmq;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 审核加积分消息的发件箱(outbox)配置
+ *  对应 application.yml 中的 outbox
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "outbox")
+public class OutboxProperties {
+
+    /**
+     * 是否使用发件箱模式：true 审核和发件箱记录在一个本地事务中提交，后台转发消息；false 使用事务半消息
+     */
+    private boolean enabled = false;
+
+    /**
+     * 是否开启后台转发，不配置时和 enabled 一致；切回半消息模式后应该显式开启，直到发件箱中的消息都发送完
+     */
+    private Boolean relayEnabled;
+
+    /**
+     * 每批认领的有效期，单位毫秒；实例宕机后，到期还没发送的记录由其他实例重新认领
+     */
+    private long relayLeaseMillis = 30000;
+
+    /**
+     * 多久检查一次未发送的消息，单位毫秒
+     */
+    private long relayIntervalMillis = 1000;
+
+    /**
+     * 每条消息最多合并多少条发件箱记录
+     */
+    private int relayBatchSize = 100;
+
+    /**
+     * 并行转发的线程数，按 id 分区，同一条记录只会由一个线程发送
+     */
+    private int relayParallelism = 2;
+
+}
@@ -0,0 +1,157 @@
+package com.itmuch.contentcenter.rocketmq;
+
+import com.alibaba.fastjson.JSON;
+import com.itmuch.contentcenter.dao.messaging.OutboxMessageMapper;
+import com.itmuch.contentcenter.domain.dto.messaging.UserAddBonusMsgDTO;
+import com.itmuch.contentcenter.domain.entity.messaging.OutboxMessage;
+import com.itmuch.contentcenter.rocketmq.codec.MessageCodecs;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.spring.support.RocketMQHeaders;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * 发件箱转发：把未发送的发件箱记录合并后发送到 MyMqSource.outboxOutput()
+ *
+ * 按 id % relayParallelism 分区并行转发，每个分区按 id 顺序每次认领 relayBatchSize 条，
+ * 合并成一条 UserAddBonusMsgDTO 列表消息(消息头 batch = true，按 message-codec.type 编码)，发送成功后再标记为已发送。
+ *
+ * 多实例：发送前先用一条 update 认领(owner + locked_until)，每条记录同一时间只会被一个实例认领；
+ * 认领后 relayLeaseMillis 内没有发送(如实例宕机)的记录由其他实例重新认领。
+ * 发送成功但标记前宕机、或认领过期后才发送成功会重复发送(至少一次)：
+ * 每一项带上发件箱记录id(outboxId)，消息 KEYS 是这一批的记录id，消费方按 outboxId 去重。
+ *
+ * outbox.relay-enabled 不配置时和 outbox.enabled 一致
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("${outbox.relay-enabled:${outbox.enabled:false}}")
+public class OutboxRelay implements DisposableBean {
+
+    private final OutboxMessageMapper outboxMessageMapper;
+
+    private final MyMqSource myMqSource;
+
+    private final OutboxProperties properties;
+
+    private final MessageCodecs messageCodecs;
+
+    private final ExecutorService workers;
+
+    public OutboxRelay(OutboxMessageMapper outboxMessageMapper,
+                       MyMqSource myMqSource,
+                       OutboxProperties properties,
+                       MessageCodecs messageCodecs) {
+        this.outboxMessageMapper = outboxMessageMapper;
+        this.myMqSource = myMqSource;
+        this.properties = properties;
+        this.messageCodecs = messageCodecs;
+        this.workers = Executors.newFixedThreadPool(
+                properties.getRelayParallelism(),
+                new CustomizableThreadFactory("outbox-relay-")
+        );
+    }
+
+    /**
+     * 转发所有分区，直到没有未发送的记录
+     * @return 本次发送的记录数
+     */
+    @Scheduled(fixedDelayString = "#{@outboxProperties.relayIntervalMillis}")
+    public int relay() {
+        int partitions = this.properties.getRelayParallelism();
+        List<Future<Integer>> futures = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            int partition = i;
+            futures.add(this.workers.submit(() -> this.relayPartition(partition, partitions)));
+        }
+
+        int total = 0;
+        for (Future<Integer> future : futures) {
+            try {
+                total += future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return total;
+            } catch (ExecutionException e) {
+                // 没发送的下次再发送
+                log.warn("发件箱转发失败", e.getCause());
+            }
+        }
+        if (total > 0) {
+            log.debug("发件箱转发 {} 条", total);
+        }
+        return total;
+    }
+
+    private int relayPartition(int partition, int partitions) {
+        int batchSize = this.properties.getRelayBatchSize();
+        int total = 0;
+        while (true) {
+            // 先认领再读取，其他实例认领不到同一批
+            String owner = UUID.randomUUID().toString();
+            Date now = new Date();
+            int claimed = this.outboxMessageMapper.claimUnsent(partition, partitions, owner, now,
+                    new Date(now.getTime() + this.properties.getRelayLeaseMillis()), batchSize);
+            if (claimed == 0) {
+                return total;
+            }
+            List<OutboxMessage> messages = this.outboxMessageMapper.selectClaimed(owner);
+            if (messages.isEmpty()) {
+                return total;
+            }
+
+            List<UserAddBonusMsgDTO> payload = messages.stream()
+                    .map(message -> {
+                        UserAddBonusMsgDTO dto = JSON.parseObject(message.getPayload(), UserAddBonusMsgDTO.class);
+                        dto.setOutboxId(message.getId());
+                        return dto;
+                    })
+                    .collect(Collectors.toList());
+            String keys = messages.stream()
+                    .map(message -> String.valueOf(message.getId()))
+                    .collect(Collectors.joining(" "));
+            boolean sent = this.myMqSource.outboxOutput()
+                    .send(
+                            this.messageCodecs
+                                    .withPayload(payload)
+                                    .setHeader("batch", "true")
+                                    // 多个 key 用空格分隔，可以按发件箱记录id查询消息
+                                    .setHeader(RocketMQHeaders.KEYS, keys)
+                                    .build()
+                    );
+            if (!sent) {
+                throw new IllegalStateException("发件箱消息发送失败！");
+            }
+            this.outboxMessageMapper.markSent(
+                    messages.stream()
+                            .map(OutboxMessage::getId)
+                            .collect(Collectors.toList()),
+                    new Date()
+            );
+
+            total += messages.size();
+            if (claimed < batchSize) {
+                return total;
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        this.workers.shutdownNow();
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.itmuch.contentcenter.rocketmq;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 事务消息回查配置
+ *  对应 application.yml 中的 transaction-check-back
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "transaction-check-back")
+public class TransactionCheckBackProperties {
+
+    /**
+     * 最近提交的事务id最多缓存多少个
+     */
+    private long committedCacheSize = 100_000;
+
+    /**
+     * 布隆过滤器每一代预计放入多少个事务id，放满后换新的一代，保留上一代
+     */
+    private int bloomExpectedInsertions = 1_000_000;
+
+    /**
+     * 布隆过滤器误判率，命中后还要查事务日志确认，误判只影响 path = bloom 指标
+     */
+    private double bloomFpp = 0.0001;
+
+    /**
+     * 消息发出多久之内查不到事务日志时返回 UNKNOWN，本地事务可能还没提交，单位秒
+     */
+    private long inFlightWindowSeconds = 60;
+
+}
@@ -0,0 +1,156 @@
+package com.itmuch.contentcenter.rocketmq;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.itmuch.contentcenter.dao.messaging.RocketmqTransactionLogMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.spring.core.RocketMQLocalTransactionState;
+import org.apache.rocketmq.spring.support.RocketMQHeaders;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 事务消息回查
+ *
+ * broker 短暂故障恢复后会集中回查大量事务，每次都查数据库压力很大，这里按代价从低到高判断：
+ *  1. 最近在本实例提交的事务id(LRU)中 : COMMIT
+ *  2. 本实例正在执行本地事务 : UNKNOWN，等 broker 下次回查
+ *  3. 按 transaction_Id 查询事务日志：事务可能是其他实例提交的，有则 COMMIT 并放入 LRU；
+ *     没有时消息刚发出不久返回 UNKNOWN，本地事务可能还在其他实例上执行，否则 ROLLBACK
+ *
+ * 布隆过滤器(本实例提交过、数据库查到过的事务id)只是提示：会误判(两代合计最多约 2 × bloom-fpp)，
+ * 命中也要查事务日志确认，只有 LRU 或事务日志能确定返回 COMMIT，误判不会把回滚的事务提交。
+ * 命中的比例(path = bloom)说明 LRU 太小，被淘汰的已提交事务还在回查
+ *
+ * 指标：/actuator/metrics/transaction.checkback?tag=path:xxx&tag=result:COMMIT
+ *  path : lru / in_flight / bloom(命中后查数据库) / db
+ */
+@Slf4j
+@Component
+public class TransactionCheckBackService {
+
+    private static final String BORN_TIMESTAMP = RocketMQHeaders.PREFIX + RocketMQHeaders.BORN_TIMESTAMP;
+
+    private final RocketmqTransactionLogMapper rocketmqTransactionLogMapper;
+
+    private final TransactionCheckBackProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Cache<String, Boolean> committed;
+
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 当前一代和上一代布隆过滤器，受 this 保护
+     */
+    private BloomFilter<CharSequence> currentBloom;
+
+    private BloomFilter<CharSequence> previousBloom;
+
+    private int currentBloomInsertions = 0;
+
+    public TransactionCheckBackService(RocketmqTransactionLogMapper rocketmqTransactionLogMapper,
+                                       TransactionCheckBackProperties properties,
+                                       MeterRegistry meterRegistry) {
+        this.rocketmqTransactionLogMapper = rocketmqTransactionLogMapper;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.committed = Caffeine.newBuilder()
+                .maximumSize(properties.getCommittedCacheSize())
+                .build();
+        this.currentBloom = this.newBloom();
+        this.previousBloom = this.newBloom();
+    }
+
+    /**
+     * 开始执行本地事务
+     * @param transactionId
+     */
+    public void begin(String transactionId) {
+        this.inFlight.add(transactionId);
+    }
+
+    /**
+     * 本地事务执行结束
+     * @param transactionId
+     * @param committed 是否提交成功
+     */
+    public void end(String transactionId, boolean committed) {
+        if (committed) {
+            this.markCommitted(transactionId);
+        }
+        this.inFlight.remove(transactionId);
+    }
+
+    /**
+     * 回查本地事务状态
+     * @param headers 消息头，需要 TRANSACTION_ID，BORN_TIMESTAMP 没有时视为很早之前发出的
+     * @return
+     */
+    public RocketMQLocalTransactionState check(MessageHeaders headers) {
+        long start = System.nanoTime();
+        String transactionId = (String) headers.get(RocketMQHeaders.TRANSACTION_ID);
+        Object bornTimestamp = headers.get(BORN_TIMESTAMP);
+        boolean recent = bornTimestamp instanceof Long
+                && System.currentTimeMillis() - (Long) bornTimestamp
+                < TimeUnit.SECONDS.toMillis(this.properties.getInFlightWindowSeconds());
+
+        String path;
+        RocketMQLocalTransactionState state;
+        if (this.committed.getIfPresent(transactionId) != null) {
+            path = "lru";
+            state = RocketMQLocalTransactionState.COMMIT;
+        } else if (this.inFlight.contains(transactionId)) {
+            path = "in_flight";
+            state = RocketMQLocalTransactionState.UNKNOWN;
+        } else {
+            path = this.mightContain(transactionId) ? "bloom" : "db";
+            if (this.rocketmqTransactionLogMapper.selectExistsByTransactionId(transactionId) != null) {
+                this.markCommitted(transactionId);
+                state = RocketMQLocalTransactionState.COMMIT;
+            } else {
+                state = recent ? RocketMQLocalTransactionState.UNKNOWN : RocketMQLocalTransactionState.ROLLBACK;
+            }
+        }
+
+        this.meterRegistry.timer("transaction.checkback", "path", path, "result", state.name())
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.debug("事务回查，transactionId：{}，path：{}，result：{}", transactionId, path, state);
+        return state;
+    }
+
+    private void markCommitted(String transactionId) {
+        this.committed.put(transactionId, Boolean.TRUE);
+        synchronized (this) {
+            if (this.currentBloomInsertions >= this.properties.getBloomExpectedInsertions()) {
+                this.previousBloom = this.currentBloom;
+                this.currentBloom = this.newBloom();
+                this.currentBloomInsertions = 0;
+            }
+            this.currentBloom.put(transactionId);
+            this.currentBloomInsertions++;
+        }
+    }
+
+    private synchronized boolean mightContain(String transactionId) {
+        return this.currentBloom.mightContain(transactionId) || this.previousBloom.mightContain(transactionId);
+    }
+
+    private BloomFilter<CharSequence> newBloom() {
+        return BloomFilter.create(
+                Funnels.stringFunnel(StandardCharsets.UTF_8),
+                this.properties.getBloomExpectedInsertions(),
+                this.properties.getBloomFpp()
+        );
+    }
+
+}
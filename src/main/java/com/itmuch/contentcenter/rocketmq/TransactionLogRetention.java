@@ -0,0 +1,253 @@
+package com.itmuch.contentcenter.rocketmq;
+
+import com.itmuch.contentcenter.dao.messaging.RocketmqTransactionLogMapper;
+import com.itmuch.contentcenter.domain.dto.messaging.TransactionLogPartitionDTO;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * rocketmq_transaction_log 定时清理
+ *
+ * 表按 create_time 每天一个分区(p20200101，最后是 p_max)时：
+ *  提前从 p_max 中拆出未来 partitionsAheadDays 天的分区，
+ *  删除结束日期早于保留期限的分区，每条语句删除一个分区，语句之间暂停，不长时间持有元数据锁
+ * 表没有分区时：
+ *  按 create_time 分批 delete ... limit，每批之间暂停
+ *
+ * 需要显式开启(transaction-log-retention.enabled = true)。
+ * 多个实例都开启时用 GET_LOCK 选出一个执行：锁持有在一个单独的连接上，执行完释放，实例宕机时连接断开自动释放；
+ *  没拿到锁的实例跳过本次(mode = SKIPPED)
+ *
+ * 执行结果和表的大小：/actuator/transactionlogretention
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "transaction-log-retention", name = "enabled", havingValue = "true")
+public class TransactionLogRetention {
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("p\\d{8}");
+
+    private static final String MAX_PARTITION = "p_max";
+
+    private static final String LOCK_NAME = "rocketmq_transaction_log_retention";
+
+    private static final DateTimeFormatter PARTITION_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    /**
+     * MySQL TO_DAYS('1970-01-01')
+     */
+    private static final long TO_DAYS_EPOCH = 719528;
+
+    private final RocketmqTransactionLogMapper rocketmqTransactionLogMapper;
+
+    private final TransactionLogRetentionProperties properties;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile Report lastReport;
+
+    public TransactionLogRetention(RocketmqTransactionLogMapper rocketmqTransactionLogMapper,
+                                   TransactionLogRetentionProperties properties,
+                                   DataSource dataSource) {
+        this.rocketmqTransactionLogMapper = rocketmqTransactionLogMapper;
+        this.properties = properties;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Scheduled(initialDelay = 60_000,
+            fixedDelayString = "#{@transactionLogRetentionProperties.intervalMinutes * 60000}")
+    public synchronized Report run() {
+        return this.jdbcTemplate.execute((ConnectionCallback<Report>) connection -> {
+            if (!lock(connection, "select get_lock(?, 0)")) {
+                log.info("其他实例正在清理事务日志，跳过本次");
+                Report skipped = new Report();
+                skipped.setStartTime(new Date());
+                skipped.setMode("SKIPPED");
+                return skipped;
+            }
+            try {
+                return this.runLocked();
+            } finally {
+                lock(connection, "select release_lock(?)");
+            }
+        });
+    }
+
+    private Report runLocked() {
+        long start = System.currentTimeMillis();
+        LocalDate today = LocalDate.now();
+        LocalDate expireBefore = today.minusDays(this.properties.getRetentionDays());
+
+        Report report = new Report();
+        report.setStartTime(new Date(start));
+        report.setExpireBefore(Date.from(expireBefore.atStartOfDay(ZoneId.systemDefault()).toInstant()));
+        try {
+            List<TransactionLogPartitionDTO> partitions = this.rocketmqTransactionLogMapper.selectPartitions();
+            if (partitions.isEmpty()) {
+                report.setMode("DELETE");
+                this.deleteInChunks(report);
+            } else {
+                report.setMode("PARTITION");
+                this.createAhead(partitions, today, report);
+                this.dropExpired(partitions, expireBefore, report);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            report.setError("interrupted");
+        } catch (Exception e) {
+            log.warn("清理事务日志失败", e);
+            report.setError(e.getMessage());
+        }
+        report.setDurationMillis(System.currentTimeMillis() - start);
+        this.lastReport = report;
+        log.info("清理事务日志：{}", report);
+        return report;
+    }
+
+    /**
+     * 执行 get_lock / release_lock
+     * @return 返回 1 时为 true
+     */
+    private static boolean lock(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, LOCK_NAME);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getInt(1) == 1;
+            }
+        }
+    }
+
+    public Report lastReport() {
+        return this.lastReport;
+    }
+
+    private void createAhead(List<TransactionLogPartitionDTO> partitions, LocalDate today, Report report) {
+        Set<String> names = partitions.stream()
+                .map(TransactionLogPartitionDTO::getName)
+                .collect(Collectors.toSet());
+        if (!names.contains(MAX_PARTITION)) {
+            return;
+        }
+        long maxBound = partitions.stream()
+                .filter(partition -> isNumeric(partition.getDescription()))
+                .mapToLong(partition -> Long.parseLong(partition.getDescription()))
+                .max()
+                .orElse(Long.MIN_VALUE);
+
+        for (int i = 0; i <= this.properties.getPartitionsAheadDays(); i++) {
+            LocalDate day = today.plusDays(i);
+            String name = partitionName(day);
+            long lessThanDays = toDays(day.plusDays(1));
+            // 拆分 p_max 只能追加在已有分区之后
+            if (names.contains(name) || lessThanDays <= maxBound) {
+                continue;
+            }
+            this.rocketmqTransactionLogMapper.addPartition(name, lessThanDays);
+            maxBound = lessThanDays;
+            report.getCreatedPartitions().add(name);
+        }
+    }
+
+    private void dropExpired(List<TransactionLogPartitionDTO> partitions, LocalDate expireBefore, Report report)
+            throws InterruptedException {
+        long expireBeforeDays = toDays(expireBefore);
+        List<TransactionLogPartitionDTO> expired = partitions.stream()
+                .filter(partition -> PARTITION_NAME.matcher(partition.getName()).matches())
+                .filter(partition -> isNumeric(partition.getDescription()))
+                .filter(partition -> Long.parseLong(partition.getDescription()) <= expireBeforeDays)
+                .collect(Collectors.toList());
+
+        int drops = Math.min(expired.size(), this.properties.getMaxDropsPerRun());
+        for (int i = 0; i < drops; i++) {
+            TransactionLogPartitionDTO partition = expired.get(i);
+            this.rocketmqTransactionLogMapper.dropPartition(partition.getName());
+            report.getDroppedPartitions().add(partition.getName());
+            report.setDeletedRows(report.getDeletedRows() + (partition.getTableRows() == null ? 0 : partition.getTableRows()));
+            Thread.sleep(this.properties.getPauseMillis());
+        }
+        report.setFinished(drops == expired.size());
+    }
+
+    private void deleteInChunks(Report report) throws InterruptedException {
+        int chunkSize = this.properties.getDeleteChunkSize();
+        for (int i = 0; i < this.properties.getMaxDeleteChunksPerRun(); i++) {
+            int deleted = this.rocketmqTransactionLogMapper.deleteBefore(report.getExpireBefore(), chunkSize);
+            report.setDeletedRows(report.getDeletedRows() + deleted);
+            if (deleted < chunkSize) {
+                report.setFinished(true);
+                return;
+            }
+            Thread.sleep(this.properties.getPauseMillis());
+        }
+    }
+
+    private static String partitionName(LocalDate day) {
+        return "p" + PARTITION_DATE.format(day);
+    }
+
+    private static long toDays(LocalDate day) {
+        return day.toEpochDay() + TO_DAYS_EPOCH;
+    }
+
+    private static boolean isNumeric(String description) {
+        return description != null && description.matches("\\d+");
+    }
+
+    /**
+     * 一次清理的结果
+     */
+    @Data
+    public static class Report {
+
+        private Date startTime;
+
+        private long durationMillis;
+
+        /**
+         * PARTITION : 删除分区 ; DELETE : 分批 delete ; SKIPPED : 其他实例正在执行
+         */
+        private String mode;
+
+        /**
+         * 早于这个时间的事务日志会被清理
+         */
+        private Date expireBefore;
+
+        private List<String> createdPartitions = new ArrayList<>();
+
+        private List<String> droppedPartitions = new ArrayList<>();
+
+        /**
+         * 删除的行数，删除分区时是估算值
+         */
+        private long deletedRows;
+
+        /**
+         * 过期的事务日志是否都清理完了，没有清理完的下次继续
+         */
+        private boolean finished;
+
+        private String error;
+    }
+
+}
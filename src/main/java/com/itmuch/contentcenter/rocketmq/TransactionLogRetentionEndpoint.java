@@ -0,0 +1,40 @@
+package com.itmuch.contentcenter.rocketmq;
+
+import com.itmuch.contentcenter.dao.messaging.RocketmqTransactionLogMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 事务日志清理进度和表的大小
+ *  /actuator/transactionlogretention
+ */
+@Component
+@Endpoint(id = "transactionlogretention")
+@ConditionalOnBean(TransactionLogRetention.class)
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class TransactionLogRetentionEndpoint {
+
+    private final TransactionLogRetention transactionLogRetention;
+
+    private final TransactionLogRetentionProperties properties;
+
+    private final RocketmqTransactionLogMapper rocketmqTransactionLogMapper;
+
+    @ReadOperation
+    public Map<String, Object> retention() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("retentionDays", this.properties.getRetentionDays());
+        result.put("lastRun", this.transactionLogRetention.lastReport());
+        result.put("tableRows", this.rocketmqTransactionLogMapper.selectTableRows());
+        result.put("partitions", this.rocketmqTransactionLogMapper.selectPartitions());
+        return result;
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.itmuch.contentcenter.rocketmq;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 事务日志保留配置
+ *  对应 application.yml 中的 transaction-log-retention
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "transaction-log-retention")
+public class TransactionLogRetentionProperties {
+
+    /**
+     * 是否开启定时清理，默认关闭；多个实例都开启时，每次只有拿到 GET_LOCK 的一个实例执行
+     */
+    private boolean enabled = false;
+
+    /**
+     * 保留多少天，要大于 broker 回查事务消息的时间范围
+     */
+    private int retentionDays = 3;
+
+    /**
+     * 多久执行一次，单位分钟
+     */
+    private long intervalMinutes = 60;
+
+    /**
+     * 提前创建多少天的分区
+     */
+    private int partitionsAheadDays = 7;
+
+    /**
+     * 每次最多删除多少个分区，每条语句删除一个分区
+     */
+    private int maxDropsPerRun = 10;
+
+    /**
+     * 没有分区时每条 delete 最多删除多少行
+     */
+    private int deleteChunkSize = 1000;
+
+    /**
+     * 没有分区时每次最多执行多少条 delete
+     */
+    private int maxDeleteChunksPerRun = 100;
+
+    /**
+     * 每条语句之间暂停多久，让出锁和 IO，单位毫秒
+     */
+    private long pauseMillis = 200;
+
+}
@@ -0,0 +1,361 @@
+package com.itmuch.contentcenter.rocketmq.codec;
+
+import com.itmuch.contentcenter.domain.dto.content.ShareAuditDTO;
+import com.itmuch.contentcenter.domain.dto.content.ShareBatchAuditDTO;
+import com.itmuch.contentcenter.domain.dto.messaging.UserAddBonusMsgDTO;
+import com.itmuch.contentcenter.domain.enums.AuditStatusEnum;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 紧凑的二进制编码
+ *
+ * 格式：版本(1字节) + 类型(1字节) + 是否列表(1字节) + [列表长度] + 记录...
+ *  每条记录：记录长度 + 字段，字段按 schema 中的顺序写，整数用 zigzag varint，null 占 1 字节
+ * 版本兼容：
+ *  消息头(版本、类型、是否列表)的格式不随版本变化，更高版本的消息也按已知格式读取；
+ *  新版本只能在记录末尾追加字段，旧版本读完已知字段后按记录长度跳过剩余字节；
+ *  旧版本的记录缺少新字段，读到记录末尾的字段为 null；
+ *  枚举按序号编码，只能在末尾追加枚举值
+ */
+@Component
+public class BinaryMessageCodec implements MessageCodec {
+
+    public static final String NAME = "binary";
+
+    static final byte VERSION = 1;
+
+    private static final byte SINGLE = 0;
+
+    private static final byte LIST = 1;
+
+    /**
+     * 空列表没有元素类型
+     */
+    private static final byte EMPTY_TYPE = 0;
+
+    private final Map<Class<?>, Schema<?>> schemasByType = new HashMap<>();
+
+    private final Map<Byte, Schema<?>> schemasByTag = new HashMap<>();
+
+    public BinaryMessageCodec() {
+        this.register(new Schema<UserAddBonusMsgDTO>((byte) 1, UserAddBonusMsgDTO.class) {
+            @Override
+            void write(UserAddBonusMsgDTO value, Output output) {
+                output.writeInteger(value.getUserId());
+                output.writeInteger(value.getBonus());
+                // 追加的字段，旧版本读取时跳过
+                output.writeInteger(value.getOutboxId());
+            }
+
+            @Override
+            UserAddBonusMsgDTO read(Input input) {
+                return UserAddBonusMsgDTO.builder()
+                        .userId(input.readInteger())
+                        .bonus(input.readInteger())
+                        .outboxId(input.readInteger())
+                        .build();
+            }
+        });
+        this.register(new Schema<ShareAuditDTO>((byte) 2, ShareAuditDTO.class) {
+            @Override
+            void write(ShareAuditDTO value, Output output) {
+                output.writeEnum(value.getAuditStatusEnum());
+                output.writeString(value.getReason());
+            }
+
+            @Override
+            ShareAuditDTO read(Input input) {
+                ShareAuditDTO value = new ShareAuditDTO();
+                value.setAuditStatusEnum(input.readEnum(AuditStatusEnum.values()));
+                value.setReason(input.readString());
+                return value;
+            }
+        });
+        this.register(new Schema<ShareBatchAuditDTO>((byte) 3, ShareBatchAuditDTO.class) {
+            @Override
+            void write(ShareBatchAuditDTO value, Output output) {
+                output.writeIntegers(value.getIds());
+                output.writeEnum(value.getAuditStatusEnum());
+                output.writeString(value.getReason());
+            }
+
+            @Override
+            ShareBatchAuditDTO read(Input input) {
+                ShareBatchAuditDTO value = new ShareBatchAuditDTO();
+                value.setIds(input.readIntegers());
+                value.setAuditStatusEnum(input.readEnum(AuditStatusEnum.values()));
+                value.setReason(input.readString());
+                return value;
+            }
+        });
+    }
+
+    private void register(Schema<?> schema) {
+        this.schemasByType.put(schema.type, schema);
+        this.schemasByTag.put(schema.tag, schema);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        Output output = new Output();
+        output.write(VERSION);
+        if (value instanceof List) {
+            List<?> values = (List<?>) value;
+            if (values.isEmpty()) {
+                output.write(EMPTY_TYPE);
+                output.write(LIST);
+                output.writeVarint(0);
+                return output.toByteArray();
+            }
+            Schema<?> schema = this.schema(values.get(0).getClass());
+            output.write(schema.tag);
+            output.write(LIST);
+            output.writeVarint(values.size());
+            for (Object item : values) {
+                schema.writeRecord(item, output);
+            }
+        } else {
+            Schema<?> schema = this.schema(value.getClass());
+            output.write(schema.tag);
+            output.write(SINGLE);
+            schema.writeRecord(value, output);
+        }
+        return output.toByteArray();
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Class<T> type) {
+        Input input = this.header(bytes, type, SINGLE);
+        return type.cast(this.schema(type).readRecord(input));
+    }
+
+    @Override
+    public <T> List<T> decodeList(byte[] bytes, Class<T> type) {
+        Input input = this.header(bytes, type, LIST);
+        int size = input.readVarint();
+        List<T> values = new ArrayList<>(size);
+        Schema<?> schema = size == 0 ? null : this.schema(type);
+        for (int i = 0; i < size; i++) {
+            values.add(type.cast(schema.readRecord(input)));
+        }
+        return values;
+    }
+
+    private Input header(byte[] bytes, Class<?> type, byte kind) {
+        Input input = new Input(ByteBuffer.wrap(bytes));
+        byte version = input.buffer.get();
+        // 更高版本只会在记录末尾追加字段，照常读取
+        if (version < 1) {
+            throw new IllegalArgumentException("参数非法！不支持的消息版本：" + version);
+        }
+        byte tag = input.buffer.get();
+        byte actualKind = input.buffer.get();
+        if (actualKind != kind) {
+            throw new IllegalArgumentException("参数非法！消息" + (kind == LIST ? "不是" : "是") + "列表");
+        }
+        if (!(kind == LIST && tag == EMPTY_TYPE) && this.schema(type).tag != tag) {
+            throw new IllegalArgumentException("参数非法！消息类型不是" + type.getSimpleName());
+        }
+        return input;
+    }
+
+    private Schema<?> schema(Class<?> type) {
+        Schema<?> schema = this.schemasByType.get(type);
+        if (schema == null) {
+            throw new IllegalArgumentException("参数非法！不支持二进制编码的消息类型：" + type.getName());
+        }
+        return schema;
+    }
+
+    /**
+     * 一种消息类型的字段顺序
+     */
+    private abstract static class Schema<T> {
+
+        private final byte tag;
+
+        private final Class<T> type;
+
+        Schema(byte tag, Class<T> type) {
+            this.tag = tag;
+            this.type = type;
+        }
+
+        abstract void write(T value, Output output);
+
+        abstract T read(Input input);
+
+        void writeRecord(Object value, Output output) {
+            Output record = new Output();
+            this.write(this.type.cast(value), record);
+            output.writeVarint(record.size());
+            output.writeBytes(record.toByteArray());
+        }
+
+        T readRecord(Input input) {
+            int length = input.readVarint();
+            ByteBuffer slice = input.buffer.slice();
+            slice.limit(length);
+            input.buffer.position(input.buffer.position() + length);
+            // 只读已知字段，新版本追加的字段随 slice 一起跳过
+            return this.read(new Input(slice));
+        }
+    }
+
+    private static class Output extends ByteArrayOutputStream {
+
+        Output() {
+            super(32);
+        }
+
+        void writeBytes(byte[] bytes) {
+            this.write(bytes, 0, bytes.length);
+        }
+
+        void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                this.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.write(value);
+        }
+
+        /**
+         * 0 表示 null，否则是 zigzag(value) + 1
+         */
+        void writeInteger(Integer value) {
+            if (value == null) {
+                this.writeVarint(0);
+                return;
+            }
+            long zigzag = ((long) value << 1) ^ ((long) value >> 63);
+            long encoded = zigzag + 1;
+            while ((encoded & ~0x7FL) != 0) {
+                this.write((int) ((encoded & 0x7F) | 0x80));
+                encoded >>>= 7;
+            }
+            this.write((int) encoded);
+        }
+
+        void writeIntegers(List<Integer> values) {
+            if (values == null) {
+                this.writeVarint(0);
+                return;
+            }
+            this.writeVarint(values.size() + 1);
+            for (Integer value : values) {
+                this.writeInteger(value);
+            }
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                this.writeVarint(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            this.writeVarint(bytes.length + 1);
+            this.writeBytes(bytes);
+        }
+
+        void writeEnum(Enum<?> value) {
+            this.writeVarint(value == null ? 0 : value.ordinal() + 1);
+        }
+    }
+
+    private static class Input {
+
+        private final ByteBuffer buffer;
+
+        Input(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        int readVarint() {
+            return (int) this.readVarlong();
+        }
+
+        long readVarlong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = this.buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("参数非法！varint 格式错误");
+        }
+
+        /**
+         * 旧版本的记录没有这个字段时返回 null
+         */
+        Integer readInteger() {
+            if (!this.buffer.hasRemaining()) {
+                return null;
+            }
+            long encoded = this.readVarlong();
+            if (encoded == 0) {
+                return null;
+            }
+            long zigzag = encoded - 1;
+            return (int) ((zigzag >>> 1) ^ -(zigzag & 1));
+        }
+
+        List<Integer> readIntegers() {
+            if (!this.buffer.hasRemaining()) {
+                return null;
+            }
+            int size = this.readVarint() - 1;
+            if (size < 0) {
+                return null;
+            }
+            List<Integer> values = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                values.add(this.readInteger());
+            }
+            return values;
+        }
+
+        String readString() {
+            if (!this.buffer.hasRemaining()) {
+                return null;
+            }
+            int length = this.readVarint() - 1;
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            this.buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        <E extends Enum<E>> E readEnum(E[] values) {
+            if (!this.buffer.hasRemaining()) {
+                return null;
+            }
+            int ordinal = this.readVarint() - 1;
+            if (ordinal < 0) {
+                return null;
+            }
+            if (ordinal >= values.length) {
+                throw new IllegalArgumentException("参数非法！未知的枚举值：" + ordinal);
+            }
+            return values[ordinal];
+        }
+    }
+
+}
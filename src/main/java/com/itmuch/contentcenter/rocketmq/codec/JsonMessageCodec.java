@@ -0,0 +1,47 @@
+package com.itmuch.contentcenter.rocketmq.codec;
+
+import com.alibaba.fastjson.JSON;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * JSON 编码，和原来的消息格式一致；没有 codec 消息头的消息也按 JSON 解码
+ */
+@Component
+public class JsonMessageCodec implements MessageCodec {
+
+    public static final String NAME = "json";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return JSON.toJSONBytes(value);
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Class<T> type) {
+        return JSON.parseObject(bytes, type);
+    }
+
+    @Override
+    public <T> List<T> decodeList(byte[] bytes, Class<T> type) {
+        return JSON.parseArray(new String(bytes, StandardCharsets.UTF_8), type);
+    }
+
+    @Override
+    public String encodeToString(Object value) {
+        return JSON.toJSONString(value);
+    }
+
+    @Override
+    public <T> T decodeFromString(String text, Class<T> type) {
+        return JSON.parseObject(text, type);
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.itmuch.contentcenter.rocketmq.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * 消息编解码
+ *  实现类注册为 Spring Bean 即可被 MessageCodecs 使用，发送时在消息头 codec 中记录 name()，接收方按消息头选择解码器
+ */
+public interface MessageCodec {
+
+    /**
+     * 编码名称，写在消息头 codec 中
+     * @return
+     */
+    String name();
+
+    /**
+     * 编码单个对象或 List
+     * @param value
+     * @return
+     */
+    byte[] encode(Object value);
+
+    <T> T decode(byte[] bytes, Class<T> type);
+
+    <T> List<T> decodeList(byte[] bytes, Class<T> type);
+
+    /**
+     * 编码成字符串，RocketMQ 的消息头只能是字符串
+     * @param value
+     * @return
+     */
+    default String encodeToString(Object value) {
+        return Base64.getEncoder().encodeToString(this.encode(value));
+    }
+
+    default <T> T decodeFromString(String text, Class<T> type) {
+        return this.decode(Base64.getDecoder().decode(text.getBytes(StandardCharsets.ISO_8859_1)), type);
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.itmuch.contentcenter.rocketmq.codec;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 消息编码配置
+ *  对应 application.yml 中的 message-codec
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "message-codec")
+public class MessageCodecProperties {
+
+    /**
+     * 发送消息使用的编码：json / binary
+     *  改成 binary 前消费方(用户中心)要先能按消息头 codec 解码
+     */
+    private String type = JsonMessageCodec.NAME;
+
+}
@@ -0,0 +1,115 @@
+package com.itmuch.contentcenter.rocketmq.codec;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 消息编解码入口，MyMqSource / MySource / MyTagsSource 发送的消息都可以通过这里编码
+ *  发送：按 message-codec.type 编码，消息头 codec 记录编码名称
+ *  接收：按消息头 codec 选择解码器，没有该消息头按 JSON 解码
+ */
+@Component
+public class MessageCodecs {
+
+    /**
+     * 消息体和编码后的消息头使用的编码
+     */
+    public static final String CODEC_HEADER = "codec";
+
+    /**
+     * Spring Cloud Alibaba RocketMQ binder 把这个消息头作为 arg 传给事务监听器的 executeLocalTransaction
+     *  消息头会随消息发出，所以和其他消息头一样用 encodeHeader 编码，本地事务用 decodeArg 解码
+     */
+    public static final String TRANSACTIONAL_ARG_HEADER = "TRANSACTIONAL_ARG";
+
+    private final Map<String, MessageCodec> codecs = new HashMap<>();
+
+    private final MessageCodec defaultCodec;
+
+    public MessageCodecs(List<MessageCodec> codecs, MessageCodecProperties properties) {
+        for (MessageCodec codec : codecs) {
+            this.codecs.put(codec.name(), codec);
+        }
+        this.defaultCodec = this.codecs.get(properties.getType());
+        if (this.defaultCodec == null) {
+            throw new IllegalArgumentException("参数非法！不支持的消息编码：" + properties.getType());
+        }
+    }
+
+    public MessageCodec defaultCodec() {
+        return this.defaultCodec;
+    }
+
+    /**
+     * @param name 为空时返回 JSON 编码
+     * @return
+     */
+    public MessageCodec get(String name) {
+        MessageCodec codec = this.codecs.get(name == null ? JsonMessageCodec.NAME : name);
+        if (codec == null) {
+            throw new IllegalArgumentException("参数非法！不支持的消息编码：" + name);
+        }
+        return codec;
+    }
+
+    /**
+     * 用默认编码编码消息体，并设置消息头 codec
+     * @param payload 单个对象或 List
+     * @return
+     */
+    public MessageBuilder<byte[]> withPayload(Object payload) {
+        return MessageBuilder
+                .withPayload(this.defaultCodec.encode(payload))
+                .setHeader(CODEC_HEADER, this.defaultCodec.name());
+    }
+
+    /**
+     * 用默认编码把对象编码成消息头的值
+     * @param value
+     * @return
+     */
+    public String encodeHeader(Object value) {
+        return this.defaultCodec.encodeToString(value);
+    }
+
+    /**
+     * 解码事务监听器的 arg：arg 是编码后的字符串，没有传 arg 时从 TRANSACTIONAL_ARG 消息头解码
+     * @param arg
+     * @param headers
+     * @param type
+     * @return
+     */
+    public <T> T decodeArg(Object arg, MessageHeaders headers, Class<T> type) {
+        if (type.isInstance(arg)) {
+            return type.cast(arg);
+        }
+        if (arg instanceof String) {
+            return this.codecOf(headers).decodeFromString((String) arg, type);
+        }
+        return this.decodeHeader(headers, TRANSACTIONAL_ARG_HEADER, type);
+    }
+
+    public <T> T decodeHeader(MessageHeaders headers, String name, Class<T> type) {
+        return this.codecOf(headers).decodeFromString((String) headers.get(name), type);
+    }
+
+    public <T> T decodePayload(Message<byte[]> message, Class<T> type) {
+        return this.codecOf(message.getHeaders()).decode(message.getPayload(), type);
+    }
+
+    public <T> List<T> decodePayloadList(Message<byte[]> message, Class<T> type) {
+        return this.codecOf(message.getHeaders()).decodeList(message.getPayload(), type);
+    }
+
+    private MessageCodec codecOf(MessageHeaders headers) {
+        Object name = headers.get(CODEC_HEADER);
+        return this.get(name == null ? null : name.toString());
+    }
+
+}
@@ -0,0 +1,277 @@
+package com.itmuch.contentcenter.search;
+
+import com.itmuch.contentcenter.dao.content.ShareMapper;
+import com.itmuch.contentcenter.domain.dto.content.ShareListItemDTO;
+import com.itmuch.contentcenter.domain.entity.content.Share;
+import com.itmuch.contentcenter.domain.enums.AuditStatusEnum;
+import com.itmuch.contentcenter.domain.enums.ShareRankingTypeEnum;
+import com.itmuch.contentcenter.service.content.ShareBuyCountWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * 审核通过的分享的内存排行榜：兑换最多(MOST_BOUGHT)、最新(NEWEST)
+ *
+ * 每个排行榜只保留前 capacity 个，按分数倒序排好，查询只需要取前 size 个，和表的大小无关。
+ * 启动完成后从数据库构建，之后在审核、兑换成功时增量更新，并定时重建修正误差
+ * (例如排行榜里的分享审核不通过被移除后，空出来的位置要等重建才能补上)。
+ * 兑换数 = 数据库中的 buy_count + 还没有写入数据库的增量，是准实时的。
+ * 排行榜满了之后，榜外分享的兑换不查库，兑换数超过榜尾而新上榜的要等下一次重建(rebuildSeconds)。
+ */
+@Slf4j
+@Component
+public class ShareRanking {
+
+    private final ShareMapper shareMapper;
+
+    private final ShareBuyCountWriter shareBuyCountWriter;
+
+    private final ShareRankingProperties properties;
+
+    private volatile Map<ShareRankingTypeEnum, Board> boards;
+
+    public ShareRanking(ShareMapper shareMapper,
+                        ShareBuyCountWriter shareBuyCountWriter,
+                        ShareRankingProperties properties) {
+        this.shareMapper = shareMapper;
+        this.shareBuyCountWriter = shareBuyCountWriter;
+        this.properties = properties;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "#{@shareRankingProperties.rebuildSeconds * 1000}",
+            fixedDelayString = "#{@shareRankingProperties.rebuildSeconds * 1000}")
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        int capacity = this.properties.getCapacity();
+        Map<ShareRankingTypeEnum, Board> newBoards = new EnumMap<>(ShareRankingTypeEnum.class);
+        for (ShareRankingTypeEnum type : ShareRankingTypeEnum.values()) {
+            Board board = new Board(capacity);
+            for (Share share : this.shareMapper.selectTopPass(ShareRankingTypeEnum.MOST_BOUGHT.equals(type), capacity)) {
+                board.put(item(type, this.toItem(share)));
+            }
+            newBoards.put(type, board);
+        }
+        this.boards = newBoards;
+        log.debug("分享排行榜重建完成，耗时：{}ms", System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 排行榜前 size 个
+     * @param type
+     * @param size 最多 capacity 个
+     * @return 构建完成前返回空列表
+     */
+    public List<ShareListItemDTO> top(ShareRankingTypeEnum type, int size) {
+        Map<ShareRankingTypeEnum, Board> current = this.boards;
+        if (current == null) {
+            return new ArrayList<>();
+        }
+        return current.get(type).top(size);
+    }
+
+    /**
+     * 兑换成功，事务提交后调用(兑换数已经累加)
+     * @param shareId
+     */
+    public void onExchanged(Integer shareId) {
+        Map<ShareRankingTypeEnum, Board> current = this.boards;
+        if (current == null) {
+            return;
+        }
+        Board mostBought = current.get(ShareRankingTypeEnum.MOST_BOUGHT);
+        ShareListItemDTO share = mostBought.incrementBuyCount(shareId);
+        if (share == null) {
+            // 不在排行榜中：排行榜满了时不查库(长尾分享的每次兑换都会走到这里)，新上榜的等定时重建补上；
+            // 没满时(分享数少于 capacity)以数据库为准加入排行榜
+            if (mostBought.isFull()) {
+                return;
+            }
+            Share entity = this.shareMapper.selectByPrimaryKey(shareId);
+            if (entity == null || !Objects.equals(AuditStatusEnum.PASS.toString(), entity.getAuditStatus())) {
+                return;
+            }
+            share = this.toItem(entity);
+            mostBought.put(item(ShareRankingTypeEnum.MOST_BOUGHT, share));
+        }
+
+        // 最新排行榜只更新兑换数，位置不变
+        current.get(ShareRankingTypeEnum.NEWEST).replaceIfPresent(item(ShareRankingTypeEnum.NEWEST, share));
+    }
+
+    /**
+     * 审核状态变化后调用，事务提交后审核通过的加入排行榜，其他的移出排行榜
+     * @param id
+     * @param auditStatusEnum
+     */
+    public void onAuditStatusChanged(Integer id, AuditStatusEnum auditStatusEnum) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    apply(id, auditStatusEnum);
+                }
+            });
+        } else {
+            this.apply(id, auditStatusEnum);
+        }
+    }
+
+    private void apply(Integer id, AuditStatusEnum auditStatusEnum) {
+        Map<ShareRankingTypeEnum, Board> current = this.boards;
+        if (current == null) {
+            return;
+        }
+        if (!AuditStatusEnum.PASS.equals(auditStatusEnum)) {
+            current.values().forEach(board -> board.remove(id));
+            return;
+        }
+        Share share = this.shareMapper.selectByPrimaryKey(id);
+        if (share == null) {
+            return;
+        }
+        ShareListItemDTO item = this.toItem(share);
+        current.forEach((type, board) -> board.put(item(type, item)));
+    }
+
+    private ShareListItemDTO toItem(Share share) {
+        ShareListItemDTO item = new ShareListItemDTO();
+        BeanUtils.copyProperties(share, item);
+        item.setDownloadUrl(null);
+        long buyCount = (share.getBuyCount() == null ? 0 : share.getBuyCount())
+                + this.shareBuyCountWriter.pendingDelta(share.getId());
+        item.setBuyCount((int) buyCount);
+        return item;
+    }
+
+    private static Item item(ShareRankingTypeEnum type, ShareListItemDTO share) {
+        long score;
+        if (ShareRankingTypeEnum.MOST_BOUGHT.equals(type)) {
+            score = share.getBuyCount() == null ? 0 : share.getBuyCount();
+        } else {
+            score = share.getCreateTime() == null ? 0 : share.getCreateTime().getTime();
+        }
+        return new Item(share, score);
+    }
+
+    private static ShareListItemDTO copy(ShareListItemDTO share) {
+        ShareListItemDTO copy = new ShareListItemDTO();
+        BeanUtils.copyProperties(share, copy);
+        return copy;
+    }
+
+    /**
+     * 排行榜中的一项，不可变，更新时整个替换
+     */
+    private static final class Item {
+
+        private final ShareListItemDTO share;
+
+        private final long score;
+
+        private Item(ShareListItemDTO share, long score) {
+            this.share = share;
+            this.score = score;
+        }
+
+        private Integer id() {
+            return this.share.getId();
+        }
+    }
+
+    /**
+     * 一个排行榜：按分数倒序、id倒序排好的前 capacity 个
+     */
+    private static final class Board {
+
+        private static final Comparator<Item> ORDER = Comparator.comparingLong((Item item) -> item.score)
+                .thenComparing(Item::id)
+                .reversed();
+
+        private final int capacity;
+
+        private final TreeSet<Item> sorted = new TreeSet<>(ORDER);
+
+        private final Map<Integer, Item> items = new HashMap<>();
+
+        private Board(int capacity) {
+            this.capacity = capacity;
+        }
+
+        /**
+         * 在排行榜中时兑换数加一
+         * @return 更新后的分享，不在排行榜中返回 null
+         */
+        private synchronized ShareListItemDTO incrementBuyCount(Integer id) {
+            Item old = this.items.get(id);
+            if (old == null) {
+                return null;
+            }
+            ShareListItemDTO share = copy(old.share);
+            share.setBuyCount(old.share.getBuyCount() + 1);
+            this.put(new Item(share, old.score + 1));
+            return share;
+        }
+
+        private synchronized boolean isFull() {
+            return this.sorted.size() >= this.capacity;
+        }
+
+        private synchronized void replaceIfPresent(Item item) {
+            if (this.items.containsKey(item.id())) {
+                this.put(item);
+            }
+        }
+
+        private synchronized void put(Item item) {
+            Item old = this.items.remove(item.id());
+            if (old != null) {
+                this.sorted.remove(old);
+            }
+            // 已经满了并且排在最后一个之后，进不了排行榜
+            if (this.sorted.size() >= this.capacity && ORDER.compare(item, this.sorted.last()) > 0) {
+                return;
+            }
+            this.sorted.add(item);
+            this.items.put(item.id(), item);
+            if (this.sorted.size() > this.capacity) {
+                Item last = this.sorted.pollLast();
+                this.items.remove(last.id());
+            }
+        }
+
+        private synchronized void remove(Integer id) {
+            Item old = this.items.remove(id);
+            if (old != null) {
+                this.sorted.remove(old);
+            }
+        }
+
+        private synchronized List<ShareListItemDTO> top(int size) {
+            List<ShareListItemDTO> top = new ArrayList<>(Math.max(0, Math.min(size, this.sorted.size())));
+            Iterator<Item> iterator = this.sorted.iterator();
+            while (iterator.hasNext() && top.size() < size) {
+                // 返回副本，调用方可以修改
+                top.add(copy(iterator.next().share));
+            }
+            return top;
+        }
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.itmuch.contentcenter.search;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 分享排行榜配置
+ *  对应 application.yml 中的 share-ranking
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "share-ranking")
+public class ShareRankingProperties {
+
+    /**
+     * 每个排行榜在内存中保留多少个分享，也是 /shares/top 一次最多返回的个数
+     */
+    private int capacity = 200;
+
+    /**
+     * 多久从数据库重建一次排行榜，修正增量维护的误差，单位秒
+     */
+    private long rebuildSeconds = 300;
+
+}
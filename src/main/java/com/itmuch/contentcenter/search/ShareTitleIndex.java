@@ -0,0 +1,285 @@
+package com.itmuch.contentcenter.search;
+
+import com.itmuch.contentcenter.dao.content.ShareMapper;
+import com.itmuch.contentcenter.domain.entity.content.Share;
+import com.itmuch.contentcenter.domain.enums.AuditStatusEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 审核通过的分享标题的内存倒排索引
+ *
+ * 标题按单字和相邻两字(1-gram + 2-gram)建立 gram -> 分享id位图 的倒排表，
+ * 查询时对关键词的所有 gram 求交集得到候选，再用内存中的标题做一次 contains 校验，
+ * 结果和 title like '%关键词%' 一致，但不需要全表扫描。
+ * 标题和关键词都用 normalize 规范化(去首尾空格、转小写)，LIKE 查询也要用同一个规范化后的关键词，
+ * 并转义 % 和 _，两条路径才会得到相同的结果。
+ *
+ * 启动完成后构建，构建完成前或构建失败时 isReady() 返回 false，调用方应继续走 LIKE 查询。
+ * 审核状态变化后通过 onAuditStatusChanged 增删，只有审核通过的分享在索引中。
+ * onAuditStatusChanged 只能感知本实例的审核，每 catchUpSeconds 按 update_time 查询上次追赶之后修改的分享，
+ * 补上其他实例的审核结果；构建失败时在追赶时重试构建。
+ */
+@Slf4j
+@Component
+public class ShareTitleIndex {
+
+    private final ShareMapper shareMapper;
+
+    private final ShareTitleIndexProperties properties;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, RoaringBitmap> postings = new HashMap<>();
+
+    /**
+     * 规范化后的标题，用于校验候选
+     */
+    private final Map<Integer, String> titles = new HashMap<>();
+
+    private volatile boolean ready = false;
+
+    /**
+     * 索引已包含这个时间之前的修改
+     */
+    private volatile Date syncedUntil;
+
+    public ShareTitleIndex(ShareMapper shareMapper, ShareTitleIndexProperties properties) {
+        this.shareMapper = shareMapper;
+        this.properties = properties;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long start = System.currentTimeMillis();
+        Date startedAt = new Date(start);
+        try {
+            this.shareMapper.scanPassTitles(context -> {
+                Share share = context.getResultObject();
+                this.add(share.getId(), share.getTitle());
+            });
+        } catch (Exception e) {
+            // 构建失败不影响启动，索引保持未就绪，查询继续走 LIKE
+            log.error("分享标题索引构建失败，标题查询继续使用 LIKE", e);
+            this.clear();
+            return;
+        }
+        this.syncedUntil = startedAt;
+        this.ready = true;
+        log.info("分享标题索引构建完成，分享数：{}，gram 数：{}，耗时：{}ms",
+                this.titles.size(), this.postings.size(), System.currentTimeMillis() - start);
+    }
+
+    public boolean isReady() {
+        return this.ready;
+    }
+
+    /**
+     * 追赶其他实例的审核结果：审核通过的加入(标题可能变了)，其他状态的删除
+     *  往前多查一个周期，update_time 在事务中取值，提交可能晚于上次追赶
+     */
+    @Scheduled(initialDelayString = "#{@shareTitleIndexProperties.catchUpSeconds * 1000}",
+            fixedDelayString = "#{@shareTitleIndexProperties.catchUpSeconds * 1000}")
+    public void catchUp() {
+        if (!this.ready) {
+            this.build();
+            return;
+        }
+        Date startedAt = new Date();
+        Date updatedAfter = new Date(this.syncedUntil.getTime() - this.properties.getCatchUpSeconds() * 1000);
+        List<Share> shares = this.shareMapper.selectTitlesUpdatedSince(updatedAfter);
+        for (Share share : shares) {
+            if (AuditStatusEnum.PASS.toString().equals(share.getAuditStatus())) {
+                this.add(share.getId(), share.getTitle());
+            } else {
+                this.remove(share.getId());
+            }
+        }
+        this.syncedUntil = startedAt;
+        log.debug("分享标题索引追赶完成，修改的分享数：{}", shares.size());
+    }
+
+    /**
+     * 查询标题包含关键词的分享id，按id升序
+     * @param keyword 不能为空
+     * @return
+     */
+    public List<Integer> search(String keyword) {
+        String normalizedKeyword = normalize(keyword);
+        this.lock.readLock().lock();
+        try {
+            RoaringBitmap candidates = null;
+            for (String gram : queryGrams(normalizedKeyword)) {
+                RoaringBitmap bitmap = this.postings.get(gram);
+                if (bitmap == null) {
+                    return new ArrayList<>();
+                }
+                candidates = candidates == null ? bitmap.clone() : RoaringBitmap.and(candidates, bitmap);
+                if (candidates.isEmpty()) {
+                    return new ArrayList<>();
+                }
+            }
+            if (candidates == null) {
+                return new ArrayList<>();
+            }
+
+            List<Integer> ids = new ArrayList<>(candidates.getCardinality());
+            candidates.forEach((int id) -> {
+                // gram 都命中但顺序不对的情况需要排除
+                if (this.titles.get(id).contains(normalizedKeyword)) {
+                    ids.add(id);
+                }
+            });
+            return ids;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 审核状态变化后调用，事务提交后生效：审核通过加入索引，其他状态从索引中删除
+     * @param id
+     * @param auditStatusEnum
+     */
+    public void onAuditStatusChanged(Integer id, AuditStatusEnum auditStatusEnum) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    apply(id, auditStatusEnum);
+                }
+            });
+        } else {
+            this.apply(id, auditStatusEnum);
+        }
+    }
+
+    private void apply(Integer id, AuditStatusEnum auditStatusEnum) {
+        if (!AuditStatusEnum.PASS.equals(auditStatusEnum)) {
+            this.remove(id);
+            return;
+        }
+        Share share = this.shareMapper.selectByPrimaryKey(id);
+        if (share == null) {
+            // 分享已被删除
+            this.remove(id);
+            return;
+        }
+        this.add(share.getId(), share.getTitle());
+    }
+
+    void add(Integer id, String title) {
+        if (title == null) {
+            this.remove(id);
+            return;
+        }
+        String normalizedTitle = normalize(title);
+        this.lock.writeLock().lock();
+        try {
+            // 标题可能变了，先删掉旧标题的 gram
+            this.removeLocked(id);
+            this.titles.put(id, normalizedTitle);
+            for (String gram : indexGrams(normalizedTitle)) {
+                this.postings.computeIfAbsent(gram, key -> new RoaringBitmap()).add(id);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    void remove(Integer id) {
+        this.lock.writeLock().lock();
+        try {
+            this.removeLocked(id);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private void removeLocked(Integer id) {
+        String normalizedTitle = this.titles.remove(id);
+        if (normalizedTitle == null) {
+            return;
+        }
+        for (String gram : indexGrams(normalizedTitle)) {
+            RoaringBitmap bitmap = this.postings.get(gram);
+            if (bitmap != null) {
+                bitmap.remove(id);
+                if (bitmap.isEmpty()) {
+                    this.postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    private void clear() {
+        this.lock.writeLock().lock();
+        try {
+            this.titles.clear();
+            this.postings.clear();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        return this.titles.size();
+    }
+
+    /**
+     * 建索引：单字 gram 和相邻两字 gram 都要建立
+     */
+    private static Set<String> indexGrams(String title) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i < title.length(); i++) {
+            grams.add(title.substring(i, i + 1));
+            if (i + 1 < title.length()) {
+                grams.add(title.substring(i, i + 2));
+            }
+        }
+        return grams;
+    }
+
+    /**
+     * 查询：单字关键词用单字 gram，否则只用两字 gram 就足够筛选
+     */
+    private static Set<String> queryGrams(String keyword) {
+        Set<String> grams = new HashSet<>();
+        if (keyword.length() == 1) {
+            grams.add(keyword);
+            return grams;
+        }
+        for (int i = 0; i + 1 < keyword.length(); i++) {
+            grams.add(keyword.substring(i, i + 2));
+        }
+        return grams;
+    }
+
+    /**
+     * 规范化标题和关键词：去掉首尾空格并转小写，null 视为空串
+     * @param text
+     * @return
+     */
+    public static String normalize(String text) {
+        return StringUtils.trimToEmpty(text).toLowerCase(Locale.ROOT);
+    }
+
+}
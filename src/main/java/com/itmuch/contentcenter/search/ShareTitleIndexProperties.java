@@ -0,0 +1,21 @@
+package com.itmuch.contentcenter.search;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 分享标题索引配置
+ *  对应 application.yml 中的 share-title-index
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "share-title-index")
+public class ShareTitleIndexProperties {
+
+    /**
+     * 多久按 update_time 追赶一次其他实例的审核结果，单位秒
+     */
+    private long catchUpSeconds = 30;
+
+}
@@ -0,0 +1,49 @@
+package com.itmuch.contentcenter.service.content;
+
+import com.itmuch.contentcenter.cache.HotShareDetector;
+import com.itmuch.contentcenter.cache.ShareCache;
+import com.itmuch.contentcenter.domain.dto.content.ShareDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 热点分享常驻缓存并在过期前主动刷新
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class HotShareRefresher {
+
+    private final HotShareDetector hotShareDetector;
+
+    private final ShareCache shareCache;
+
+    private final ShareService shareService;
+
+    @Scheduled(fixedDelayString = "#{@shareCacheProperties.hotRefreshSeconds * 1000}")
+    public void refresh() {
+        List<Integer> hotShareIds = this.hotShareDetector.hotShareIds();
+        this.shareCache.retainPinned(hotShareIds);
+
+        for (Integer id : hotShareIds) {
+            try {
+                long loadMark = this.shareCache.loadMark();
+                ShareDTO shareDTO = this.shareService.findByIdByFeign(id);
+                // 降级数据不会固定，继续使用旧值
+                this.shareCache.pin(id, shareDTO, loadMark);
+            } catch (Exception e) {
+                // 刷新失败继续使用旧值，下次再刷新
+                log.warn("刷新热点分享失败，id：{}", id, e);
+            }
+        }
+        if (!hotShareIds.isEmpty()) {
+            log.debug("刷新热点分享：{}", hotShareIds);
+        }
+    }
+
+}
@@ -1,31 +1,57 @@
 package com.itmuch.contentcenter.service.content;
 
 import com.alibaba.fastjson.JSON;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.itmuch.contentcenter.cache.ShareCache;
+import com.itmuch.contentcenter.cache.ShareCountCache;
 import com.itmuch.contentcenter.dao.content.ShareMapper;
+import com.itmuch.contentcenter.datasource.ReadFromReplica;
+import com.itmuch.contentcenter.dao.messaging.OutboxMessageMapper;
 import com.itmuch.contentcenter.dao.messaging.RocketmqTransactionLogMapper;
 import com.itmuch.contentcenter.domain.dto.content.ShareAuditDTO;
+import com.itmuch.contentcenter.domain.dto.content.ShareBatchAuditDTO;
 import com.itmuch.contentcenter.domain.dto.messaging.UserAddBonusMsgDTO;
 import com.itmuch.contentcenter.domain.entity.content.Share;
+import com.itmuch.contentcenter.domain.entity.messaging.OutboxMessage;
 import com.itmuch.contentcenter.domain.entity.messaging.RocketmqTransactionLog;
 import com.itmuch.contentcenter.domain.enums.AuditStatusEnum;
 import com.itmuch.contentcenter.rocketmq.MyMqSource;
+import com.itmuch.contentcenter.rocketmq.OutboxProperties;
+import com.itmuch.contentcenter.rocketmq.codec.MessageCodecs;
+import com.itmuch.contentcenter.search.ShareRanking;
+import com.itmuch.contentcenter.search.ShareTitleIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
 import org.apache.rocketmq.spring.core.RocketMQTemplate;
 import org.apache.rocketmq.spring.support.RocketMQHeaders;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor(onConstructor = @__(@Autowired))
 public class ShareAdminService {
 
+    /**
+     * 批量审核一次最多审核多少个分享，审核参数放在消息头中，不能太大
+     */
+    private static final int MAX_BATCH_AUDIT_SIZE = 1000;
+
     private final ShareMapper shareMapper;
 
     //private final RocketMQTemplate rocketMQTemplate;
@@ -34,6 +60,24 @@ public class ShareAdminService {
 
     private final MyMqSource myMqSource;
 
+    private final ShareCache shareCache;
+
+    private final ShareCountCache shareCountCache;
+
+    private final ShareTitleIndex shareTitleIndex;
+
+    private final ShareRanking shareRanking;
+
+    private final ObjectMapper objectMapper;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final OutboxMessageMapper outboxMessageMapper;
+
+    private final OutboxProperties outboxProperties;
+
+    private final MessageCodecs messageCodecs;
+
     //transactional
     /*@Transactional(rollbackFor = Exception.class)
     public Share auditById(Integer id, ShareAuditDTO auditDTO) {
@@ -121,23 +165,26 @@ public class ShareAdminService {
                 .id(id)
                 .auditStatus(auditDTO.getAuditStatusEnum().toString())
                 .reason(auditDTO.getReason())
+                // 修改时间用于分享详情的 ETag / Last-Modified 校验
+                .updateTime(new Date())
                 .build();
         shareMapper.updateByPrimaryKeySelective(share);
 
-
+        // 审核状态变了，删除分享详情缓存，更新列表总数
+        shareCache.evictAfterCommit(id);
+        shareCountCache.onAuditStatusChanged(auditDTO.getAuditStatusEnum());
+        // 审核通过的分享加入标题索引，否则从索引中删除
+        shareTitleIndex.onAuditStatusChanged(id, auditDTO.getAuditStatusEnum());
+        shareRanking.onAuditStatusChanged(id, auditDTO.getAuditStatusEnum());
     }
 
     // 增加一条记录日志的方法
-    @Transactional(rollbackFor = Exception.class)
+    // 可重复读：insertIfAbsent 靠 next-key 锁保证 transaction_Id 唯一，不依赖数据库的默认隔离级别
+    @Transactional(rollbackFor = Exception.class, isolation = Isolation.REPEATABLE_READ)
     public void auditByIdWithRocketMqLog(Integer id, ShareAuditDTO auditDTO, String transactionId) {
         this.auditByIdInDB(id, auditDTO);
 
-        this.rocketmqTransactionLogMapper.insertSelective(
-                RocketmqTransactionLog.builder()
-                        .transactionId(transactionId)
-                        .log("审核分享...")
-                        .build()
-        );
+        this.insertTransactionLog(transactionId, "审核分享...");
     }
 
     // 判断是否存在审核的记录日志
@@ -155,6 +202,7 @@ public class ShareAdminService {
     }
 
     // 分布式事务实现逻辑 ：Stream + RocketMQ 发送半消息
+    // 半消息同步发送：本地事务在发送线程中执行，不能放到 AsyncMessagePublisher 的发送线程里排队
     public Share auditByIdStreamMqTrans(Integer id, ShareAuditDTO auditDTO) {
         // 1. 查询share是否存在，不存在或者当前的audit_status != NOT_YET，那么抛异常
         Share share = this.shareMapper.selectByPrimaryKey(id);
@@ -167,25 +215,35 @@ public class ShareAdminService {
 
         // 3. (RocketMQ) 如果是PASS，那么发送消息给rocketmq，让用户中心去消费，并为发布人添加积分
         if (AuditStatusEnum.PASS.equals(auditDTO.getAuditStatusEnum())) {
+            // 发件箱模式：审核和发件箱记录在一个本地事务中提交，由 OutboxRelay 发送消息，不等待 broker
+            if (this.outboxProperties.isEnabled()) {
+                this.transactionTemplate.execute(status -> {
+                    this.auditByIdInDB(id, auditDTO);
+                    this.outboxMessageMapper.insertSelective(addBonusOutboxMessage(share.getUserId(), new Date()));
+                    return null;
+                });
+                return share;
+            }
+
             // 发送半消息 ...
             String transactionId = UUID.randomUUID().toString();
 
-            this.myMqSource.output()
-                    .send(
-                            MessageBuilder
-                                    .withPayload(
-                                            UserAddBonusMsgDTO.builder()
-                                                    .userId(share.getUserId())
-                                                    .bonus(50)
-                                                    .build()
-                                    )
-                                    // header 有很大用处 ... header只能传字符串
-                                    .setHeader(RocketMQHeaders.TRANSACTION_ID, transactionId)
-                                    .setHeader("share_id", id)
-                                    // 将 arg 参数转换成JSON字符串后放在 header 中传，因为该方法不支持
-                                    .setHeader("dto", JSON.toJSONString(auditDTO))
-                                    .build()
-                    );
+            this.myMqSource.output().send(
+                    // 消息体按 message-codec.type 编码
+                    this.messageCodecs
+                            .withPayload(
+                                    UserAddBonusMsgDTO.builder()
+                                            .userId(share.getUserId())
+                                            .bonus(50)
+                                            .build()
+                            )
+                            // header 有很大用处 ... header只能传字符串
+                            .setHeader(RocketMQHeaders.TRANSACTION_ID, transactionId)
+                            .setHeader("share_id", id)
+                            // 本地事务的 arg，和消息体用同一种编码
+                            .setHeader(MessageCodecs.TRANSACTIONAL_ARG_HEADER, this.messageCodecs.encodeHeader(auditDTO))
+                            .build()
+            );
 
         } else {
             // 审核不通过 操作数据库记录
@@ -195,4 +253,185 @@ public class ShareAdminService {
         return share;
     }
 
+    /**
+     * 批量审核：一个本地事务、一条事务日志、一条半消息
+     *  审核通过时半消息的内容是 UserAddBonusMsgDTO 列表，每个分享一项，消息头 batch = true
+     * @param auditDTO
+     * @return 审核前的分享(只有 id、userId、auditStatus)
+     */
+    public List<Share> auditBatchStreamMqTrans(ShareBatchAuditDTO auditDTO) {
+        // 1. 校验分享都存在并且都是待审核的
+        if (auditDTO.getIds() == null || auditDTO.getIds().isEmpty()) {
+            throw new IllegalArgumentException("参数非法！请选择要审核的分享！");
+        }
+        List<Integer> ids = auditDTO.getIds().stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+        if (ids.size() > MAX_BATCH_AUDIT_SIZE) {
+            throw new IllegalArgumentException("参数非法！一次最多审核" + MAX_BATCH_AUDIT_SIZE + "个分享！");
+        }
+        auditDTO.setIds(ids);
+
+        List<Share> shares = this.shareMapper.selectAuditStatusByIds(ids);
+        if (shares.size() != ids.size()) {
+            Set<Integer> existIds = shares.stream()
+                    .map(Share::getId)
+                    .collect(Collectors.toSet());
+            List<Integer> notExistIds = ids.stream()
+                    .filter(id -> !existIds.contains(id))
+                    .collect(Collectors.toList());
+            throw new IllegalArgumentException("参数非法！分享不存在！id：" + notExistIds);
+        }
+        List<Integer> auditedIds = shares.stream()
+                .filter(share -> !Objects.equals("NOT_YET", share.getAuditStatus()))
+                .map(Share::getId)
+                .collect(Collectors.toList());
+        if (!auditedIds.isEmpty()) {
+            throw new IllegalArgumentException("参数非法！分享已审核通过或审核不通过！id：" + auditedIds);
+        }
+
+        // 2. 审核通过发送一条半消息，本地事务在 NewAddBonusTransactionListener 中执行
+        //    发件箱模式则和发件箱记录在一个本地事务中提交
+        if (AuditStatusEnum.PASS.equals(auditDTO.getAuditStatusEnum()) && this.outboxProperties.isEnabled()) {
+            Date now = new Date();
+            List<OutboxMessage> outboxMessages = shares.stream()
+                    .map(share -> addBonusOutboxMessage(share.getUserId(), now))
+                    .collect(Collectors.toList());
+            this.transactionTemplate.execute(status -> {
+                this.auditBatchInDB(auditDTO);
+                this.outboxMessageMapper.insertBatch(outboxMessages);
+                return null;
+            });
+        } else if (AuditStatusEnum.PASS.equals(auditDTO.getAuditStatusEnum())) {
+            String transactionId = UUID.randomUUID().toString();
+            List<UserAddBonusMsgDTO> payload = shares.stream()
+                    .map(share -> UserAddBonusMsgDTO.builder()
+                            .userId(share.getUserId())
+                            .bonus(50)
+                            .build())
+                    .collect(Collectors.toList());
+
+            this.myMqSource.output().send(
+                    this.messageCodecs
+                            .withPayload(payload)
+                            .setHeader(RocketMQHeaders.TRANSACTION_ID, transactionId)
+                            .setHeader("batch", "true")
+                            .setHeader(MessageCodecs.TRANSACTIONAL_ARG_HEADER, this.messageCodecs.encodeHeader(auditDTO))
+                            .build()
+            );
+        } else {
+            // 审核不通过 操作数据库记录，自己调用自己的方法事务注解不生效，所以用 TransactionTemplate
+            this.transactionTemplate.execute(status -> {
+                this.auditBatchInDB(auditDTO);
+                return null;
+            });
+        }
+
+        return shares;
+    }
+
+    /**
+     * 批量修改审核状态，任何一个分享已经被审核过都整批回滚
+     * @param auditDTO
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void auditBatchInDB(ShareBatchAuditDTO auditDTO) {
+        List<Integer> ids = auditDTO.getIds();
+        AuditStatusEnum auditStatusEnum = auditDTO.getAuditStatusEnum();
+        int updated = this.shareMapper.updateAuditStatusByIds(
+                ids, auditStatusEnum.toString(), auditDTO.getReason(), new Date());
+        if (updated != ids.size()) {
+            throw new IllegalStateException("批量审核失败！部分分享已被审核！");
+        }
+
+        for (Integer id : ids) {
+            shareCache.evictAfterCommit(id);
+            shareCountCache.onAuditStatusChanged(auditStatusEnum);
+            shareTitleIndex.onAuditStatusChanged(id, auditStatusEnum);
+            shareRanking.onAuditStatusChanged(id, auditStatusEnum);
+        }
+    }
+
+    /**
+     * 批量审核并记录一条事务日志
+     * @param auditDTO
+     * @param transactionId
+     */
+    // 可重复读：insertIfAbsent 靠 next-key 锁保证 transaction_Id 唯一，不依赖数据库的默认隔离级别
+    @Transactional(rollbackFor = Exception.class, isolation = Isolation.REPEATABLE_READ)
+    public void auditBatchWithRocketMqLog(ShareBatchAuditDTO auditDTO, String transactionId) {
+        this.auditBatchInDB(auditDTO);
+
+        this.insertTransactionLog(transactionId, "批量审核分享...");
+    }
+
+    /**
+     * 记录事务日志，同一个 transactionId 只能记录一次，重复时抛异常回滚本地事务
+     *  事务日志表按 create_time 分区后 transaction_Id 上没有唯一索引，调用方的事务必须是可重复读
+     * @param transactionId
+     * @param content
+     */
+    private void insertTransactionLog(String transactionId, String content) {
+        int inserted = this.rocketmqTransactionLogMapper.insertIfAbsent(
+                RocketmqTransactionLog.builder()
+                        .transactionId(transactionId)
+                        .log(content)
+                        .createTime(new Date())
+                        .build()
+        );
+        if (inserted == 0) {
+            throw new IllegalStateException("事务日志已存在！transactionId：" + transactionId);
+        }
+    }
+
+    /**
+     * 审核通过为发布人加积分的发件箱记录
+     * @param userId
+     * @param now
+     * @return
+     */
+    private static OutboxMessage addBonusOutboxMessage(Integer userId, Date now) {
+        return OutboxMessage.builder()
+                .payload(JSON.toJSONString(
+                        UserAddBonusMsgDTO.builder()
+                                .userId(userId)
+                                .bonus(50)
+                                .build()
+                ))
+                .sent(false)
+                .createTime(now)
+                .build();
+    }
+
+    /**
+     * 以 NDJSON(每行一个 JSON)格式流式导出分享
+     *  通过 MyBatis Cursor 逐行读取、逐行写出，内存占用和导出的行数无关
+     *  游标需要在事务(同一个 SqlSession)中读取，所以加上只读事务
+     * @param auditStatus 审核状态，为空不过滤
+     * @param updatedAfter 修改时间下限(包含)，为空不过滤
+     * @param updatedBefore 修改时间上限(不包含)，为空不过滤
+     * @param outputStream
+     * @return 导出的行数
+     * @throws IOException
+     */
+    @ReadFromReplica
+    @Transactional(readOnly = true)
+    public long exportShares(AuditStatusEnum auditStatus, Date updatedAfter, Date updatedBefore,
+                             OutputStream outputStream) throws IOException {
+        long count = 0;
+        try (Cursor<Share> cursor = this.shareMapper.selectForExport(
+                auditStatus == null ? null : auditStatus.toString(), updatedAfter, updatedBefore);
+             SequenceWriter writer = this.objectMapper.writer()
+                     .withRootValueSeparator("\n")
+                     .writeValues(outputStream)) {
+            for (Share share : cursor) {
+                writer.write(share);
+                count++;
+            }
+        }
+        log.info("导出分享 {} 条", count);
+        return count;
+    }
+
 }
@@ -0,0 +1,98 @@
+package com.itmuch.contentcenter.service.content;
+
+import com.google.common.collect.Iterables;
+import com.itmuch.contentcenter.dao.content.ShareMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 分享兑换数 buy_count 的合并写入(write-behind)
+ *
+ * 兑换成功后只在内存中累加每个分享还没写入的增量，定时把增量用一条 update 语句批量写入数据库，
+ * 热门分享不会因为每次兑换都 update 同一行而排队等待行锁。
+ * 写入成功后从增量中减去已写入的部分，减到 0 的分享从 map 中删除，map 里只有还没写入的分享；
+ * 累加和扣减都在 ConcurrentHashMap 的同一个 key 上原子执行，删除时不会丢失并发的累加。
+ * 写入期间的并发累加会留到下一次写入，写入失败也会在下一次重试，不会丢失。
+ * 应用关闭时再写入一次；进程异常退出时最多丢失一个写入周期的增量。
+ */
+@Slf4j
+@Component
+public class ShareBuyCountWriter implements DisposableBean {
+
+    private final ShareMapper shareMapper;
+
+    private final ShareExchangeProperties properties;
+
+    /**
+     * 分享id -> 还没写入数据库的增量
+     */
+    private final ConcurrentMap<Integer, Long> deltas = new ConcurrentHashMap<>();
+
+    public ShareBuyCountWriter(ShareMapper shareMapper, ShareExchangeProperties properties) {
+        this.shareMapper = shareMapper;
+        this.properties = properties;
+    }
+
+    /**
+     * 兑换成功，事务提交后调用
+     * @param shareId
+     */
+    public void increment(Integer shareId) {
+        this.deltas.merge(shareId, 1L, Long::sum);
+    }
+
+    /**
+     * 还没有写入数据库的增量，数据库中的 buy_count 加上它就是准实时的兑换数
+     * @param shareId
+     * @return
+     */
+    public long pendingDelta(Integer shareId) {
+        return this.deltas.getOrDefault(shareId, 0L);
+    }
+
+    /**
+     * 所有还没有写入数据库的增量
+     * @return
+     */
+    public Map<Integer, Long> pendingDeltas() {
+        return new LinkedHashMap<>(this.deltas);
+    }
+
+    @Scheduled(fixedDelayString = "#{@shareExchangeProperties.buyCountFlushSeconds * 1000}")
+    public synchronized void flush() {
+        Map<Integer, Long> deltas = this.pendingDeltas();
+        if (deltas.isEmpty()) {
+            return;
+        }
+        for (List<Map.Entry<Integer, Long>> chunk
+                : Iterables.partition(deltas.entrySet(), this.properties.getBuyCountFlushBatchSize())) {
+            Map<Integer, Long> chunkDeltas = new LinkedHashMap<>();
+            chunk.forEach(entry -> chunkDeltas.put(entry.getKey(), entry.getValue()));
+            try {
+                this.shareMapper.incrementBuyCounts(chunkDeltas);
+            } catch (Exception e) {
+                // 没写入的增量留到下一次
+                log.warn("写入分享兑换数失败，分享数：{}", chunkDeltas.size(), e);
+                return;
+            }
+            // 减去已写入的部分，减到 0 时返回 null 删除 key
+            chunkDeltas.forEach((shareId, delta) -> this.deltas.computeIfPresent(
+                    shareId, (id, pending) -> pending - delta == 0 ? null : pending - delta));
+        }
+        log.debug("写入分享兑换数，分享数：{}", deltas.size());
+    }
+
+    @Override
+    public void destroy() {
+        this.flush();
+    }
+
+}
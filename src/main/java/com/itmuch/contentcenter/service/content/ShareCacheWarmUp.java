@@ -0,0 +1,120 @@
+package com.itmuch.contentcenter.service.content;
+
+import com.itmuch.contentcenter.cache.ShareCache;
+import com.itmuch.contentcenter.dao.content.ShareMapper;
+import com.itmuch.contentcenter.domain.dto.user.UserDTO;
+import com.itmuch.contentcenter.domain.entity.content.Share;
+import com.itmuch.contentcenter.feignclient.batch.UserCenterBatchLoader;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * 启动时预热分享详情缓存
+ *  批量查询最新/兑换最多的 N 个审核通过的分享，再批量查询发布人，组装 ShareDTO 放入缓存
+ *
+ * 同时作为健康检查 /actuator/health 中的 shareCacheWarmUp：
+ *  ApplicationReadyEvent 之前(还没开始预热)和预热中为 OUT_OF_SERVICE，预热完成或超时后为 UP，并给出耗时和覆盖率
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class ShareCacheWarmUp implements HealthIndicator {
+
+    private final ShareWarmUpProperties properties;
+
+    private final ShareMapper shareMapper;
+
+    private final UserCenterBatchLoader userCenterBatchLoader;
+
+    private final ShareCache shareCache;
+
+    private volatile String state = "NOT_STARTED";
+
+    private volatile long durationMillis;
+
+    private volatile int requested;
+
+    private volatile int warmed;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!this.properties.isEnabled()) {
+            this.state = "DISABLED";
+            return;
+        }
+        this.state = "RUNNING";
+        long start = System.currentTimeMillis();
+
+        CompletableFuture<Void> future = CompletableFuture.runAsync(this::doWarmUp);
+        // 预热在后台执行，不阻塞启动；超时后视为就绪，剩余部分继续在后台完成
+        CompletableFuture.runAsync(() -> {
+            try {
+                future.get(this.properties.getTimeoutSeconds(), TimeUnit.SECONDS);
+                this.state = "COMPLETED";
+            } catch (TimeoutException e) {
+                this.state = "TIMED_OUT";
+                log.warn("缓存预热超时，已预热 {}/{}", this.warmed, this.requested);
+            } catch (Exception e) {
+                this.state = "FAILED";
+                log.warn("缓存预热失败", e);
+            }
+            this.durationMillis = System.currentTimeMillis() - start;
+            log.info("缓存预热结束，状态：{}，分享：{}/{}，耗时：{}ms",
+                    this.state, this.warmed, this.requested, this.durationMillis);
+        });
+    }
+
+    private void doWarmUp() {
+        boolean mostBought = ShareWarmUpProperties.Strategy.MOST_BOUGHT.equals(this.properties.getStrategy());
+        long loadMark = this.shareCache.loadMark();
+        List<Share> shares = this.shareMapper.selectTopPass(mostBought, this.properties.getSize());
+        this.requested = shares.size();
+
+        // 发布人通过合并器批量查询
+        Set<Integer> userIds = shares.stream()
+                .map(Share::getUserId)
+                .collect(Collectors.toSet());
+        Map<Integer, UserDTO> users = this.userCenterBatchLoader.loadAll(userIds);
+
+        int count = 0;
+        for (Share share : shares) {
+            UserDTO userDTO = users.get(share.getUserId());
+            // 降级数据和预热期间被审核修改过的分享不会写入
+            if (userDTO != null
+                    && this.shareCache.put(share.getId(), ShareService.toShareDTO(share, userDTO), loadMark)) {
+                count++;
+            }
+        }
+        this.warmed = count;
+    }
+
+    @Override
+    public Health health() {
+        // 还没开始预热时缓存是空的，同样不接流量
+        boolean notReady = "NOT_STARTED".equals(this.state) || "RUNNING".equals(this.state);
+        Health.Builder builder = notReady ? Health.outOfService() : Health.up();
+        return builder
+                .withDetail("state", this.state)
+                .withDetail("strategy", this.properties.getStrategy())
+                .withDetail("requested", this.requested)
+                .withDetail("warmed", this.warmed)
+                .withDetail("coverage", this.requested == 0 ? 1.0 : (double) this.warmed / this.requested)
+                .withDetail("durationMillis", this.durationMillis)
+                .build();
+    }
+
+}
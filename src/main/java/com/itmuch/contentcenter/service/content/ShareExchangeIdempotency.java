@@ -0,0 +1,83 @@
+package com.itmuch.contentcenter.service.content;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.itmuch.contentcenter.cache.SingleFlight;
+import com.itmuch.contentcenter.dao.content.MidUserShareMapper;
+import com.itmuch.contentcenter.domain.entity.content.Share;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 兑换请求的幂等键(请求头 Idempotency-Key)
+ *  同一个用户的同一个幂等键：
+ *   执行中重复提交 : 等待第一次的结果，不会重复执行
+ *   执行成功后重试 : 直接返回第一次的结果
+ *   执行失败 : 不保存结果，允许用同一个幂等键重试
+ *  结果在当前实例内存中保存；幂等键同时和兑换占位一起写入 mid_user_share，
+ *  重试落到其他实例时：兑换的是同一个分享，由 (user_id, share_id) 唯一索引识别为已兑换并返回分享；
+ *  幂等键已用于其他分享时拒绝
+ */
+@Component
+public class ShareExchangeIdempotency {
+
+    private final Cache<String, Share> results;
+
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private final SingleFlight<String, Share> singleFlight;
+
+    private final MidUserShareMapper midUserShareMapper;
+
+    public ShareExchangeIdempotency(MidUserShareMapper midUserShareMapper,
+                                    ShareExchangeProperties properties,
+                                    MeterRegistry meterRegistry) {
+        this.midUserShareMapper = midUserShareMapper;
+        this.results = Caffeine.newBuilder()
+                .maximumSize(properties.getIdempotencyMaximumSize())
+                .expireAfterWrite(properties.getIdempotencyExpireSeconds(), TimeUnit.SECONDS)
+                .build();
+        this.singleFlight = new SingleFlight<>("shareExchange", meterRegistry);
+    }
+
+    /**
+     * 按幂等键执行兑换
+     * @param userId 当前用户
+     * @param shareId 兑换的分享
+     * @param idempotencyKey 为空时不做幂等处理，直接执行
+     * @param exchange 兑换逻辑
+     * @return
+     */
+    public Share execute(Integer userId, Integer shareId, String idempotencyKey, Supplier<Share> exchange) {
+        if (StringUtils.isBlank(idempotencyKey)) {
+            return exchange.get();
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("参数非法！幂等键不能超过" + MAX_KEY_LENGTH + "个字符");
+        }
+
+        String key = userId + ":" + idempotencyKey;
+        Share share = this.results.getIfPresent(key);
+        if (share == null) {
+            share = this.singleFlight.load(key, k -> {
+                // 其他实例用这个幂等键兑换过
+                Integer usedShareId = this.midUserShareMapper.selectShareIdByIdempotencyKey(userId, idempotencyKey.trim());
+                if (usedShareId != null && !usedShareId.equals(shareId)) {
+                    throw new IllegalArgumentException("参数非法！幂等键已用于兑换其他分享");
+                }
+                Share result = exchange.get();
+                this.results.put(k, result);
+                return result;
+            });
+        }
+        if (!shareId.equals(share.getId())) {
+            throw new IllegalArgumentException("参数非法！幂等键已用于兑换其他分享");
+        }
+        return share;
+    }
+
+}
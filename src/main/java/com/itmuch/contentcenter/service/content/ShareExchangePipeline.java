@@ -0,0 +1,453 @@
+package com.itmuch.contentcenter.service.content;
+
+import com.google.common.collect.Iterables;
+import com.itmuch.contentcenter.cache.PurchasedShareCache;
+import com.itmuch.contentcenter.dao.content.MidUserShareMapper;
+import com.itmuch.contentcenter.dao.content.ShareExchangeMapper;
+import com.itmuch.contentcenter.dao.content.ShareMapper;
+import com.itmuch.contentcenter.datasource.ReadYourWritesTracker;
+import com.itmuch.contentcenter.domain.dto.content.ShareExchangeDTO;
+import com.itmuch.contentcenter.domain.dto.user.UserAddBonusItemDTO;
+import com.itmuch.contentcenter.domain.dto.user.UserAddBonusResultDTO;
+import com.itmuch.contentcenter.domain.entity.content.MidUserShare;
+import com.itmuch.contentcenter.domain.entity.content.Share;
+import com.itmuch.contentcenter.domain.entity.content.ShareExchange;
+import com.itmuch.contentcenter.domain.enums.ShareExchangeStatusEnum;
+import com.itmuch.contentcenter.exception.ShareExchangeBusyException;
+import com.itmuch.contentcenter.exception.ShareNotFoundException;
+import com.itmuch.contentcenter.feignclient.UserCenterFeignClient;
+import com.itmuch.contentcenter.search.ShareRanking;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 异步兑换流水线
+ *
+ * 受理：校验分享存在、没有兑换过，写入 share_exchange(PENDING) 后立即返回查询凭证，不调用用户中心
+ * 处理：按用户id把兑换分到固定的处理线程(lane)，同一用户的兑换按受理顺序处理；
+ *      每个 lane 攒批后在一个本地事务中先插入 mid_user_share 占位，再用一次 addBonusBatch 扣减整批积分，
+ *      最后修改兑换记录状态
+ * 背压：排队数超过 capacity 时拒绝受理
+ * 失败：用户中心不可用或本地事务提交失败时整批回滚后重试。扣减的 requestId 固定为兑换记录id，
+ *      用户中心按它去重，重试不会重复扣减，所以这里不需要退回积分；
+ *      多次重试仍失败的兑换保持 PENDING，不再续约，租约到期后重新排队
+ * 多实例：受理的实例持有兑换记录的租约(owner + locked_until)，处理期间每 1/3 租约续约一次；
+ *      启动时和每次续约时只接管租约已到期的 PENDING 兑换(实例宕机或多次重试失败)，不会接管其他实例正在处理的。
+ *      续约不及时(如长时间 GC)可能两个实例处理同一兑换：mid_user_share 唯一索引和固定的 requestId 保证只扣减一次
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "share-exchange.async", name = "enabled", havingValue = "true")
+public class ShareExchangePipeline implements DisposableBean {
+
+    private static final String REQUEST_ID_PREFIX = "share-exchange-";
+
+    /**
+     * 每条续约语句最多续约多少个兑换
+     */
+    private static final int RENEW_BATCH_SIZE = 500;
+
+    private final ShareMapper shareMapper;
+
+    private final MidUserShareMapper midUserShareMapper;
+
+    private final ShareExchangeMapper shareExchangeMapper;
+
+    private final UserCenterFeignClient userCenterFeignClient;
+
+    private final PurchasedShareCache purchasedShareCache;
+
+    private final ReadYourWritesTracker readYourWritesTracker;
+
+    private final ShareBuyCountWriter shareBuyCountWriter;
+
+    private final ShareRanking shareRanking;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ShareExchangeProperties.Async properties;
+
+    private final List<BlockingQueue<ShareExchange>> lanes = new ArrayList<>();
+
+    private final ExecutorService workers;
+
+    /**
+     * 已受理、还没处理完的兑换数
+     */
+    private final AtomicInteger queued = new AtomicInteger();
+
+    /**
+     * 本实例，写入兑换记录的 owner
+     */
+    private final String owner = UUID.randomUUID().toString();
+
+    /**
+     * 本实例已排队、还没处理完的兑换id，只续约这些
+     */
+    private final Set<Integer> inFlight = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean running = true;
+
+    public ShareExchangePipeline(ShareMapper shareMapper,
+                                 MidUserShareMapper midUserShareMapper,
+                                 ShareExchangeMapper shareExchangeMapper,
+                                 UserCenterFeignClient userCenterFeignClient,
+                                 PurchasedShareCache purchasedShareCache,
+                                 ReadYourWritesTracker readYourWritesTracker,
+                                 ShareBuyCountWriter shareBuyCountWriter,
+                                 ShareRanking shareRanking,
+                                 TransactionTemplate transactionTemplate,
+                                 ShareExchangeProperties properties,
+                                 MeterRegistry meterRegistry) {
+        this.shareMapper = shareMapper;
+        this.midUserShareMapper = midUserShareMapper;
+        this.shareExchangeMapper = shareExchangeMapper;
+        this.userCenterFeignClient = userCenterFeignClient;
+        this.purchasedShareCache = purchasedShareCache;
+        this.readYourWritesTracker = readYourWritesTracker;
+        this.shareBuyCountWriter = shareBuyCountWriter;
+        this.shareRanking = shareRanking;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties.getAsync();
+        for (int i = 0; i < this.properties.getLanes(); i++) {
+            this.lanes.add(new LinkedBlockingQueue<>());
+        }
+        this.workers = Executors.newFixedThreadPool(
+                this.properties.getLanes(),
+                new CustomizableThreadFactory("share-exchange-")
+        );
+        meterRegistry.gauge("share.exchange.queued", this.queued);
+    }
+
+    /**
+     * 接管租约已到期的兑换，然后启动处理线程
+     */
+    @PostConstruct
+    public void start() {
+        this.takeOverExpired();
+        for (BlockingQueue<ShareExchange> lane : this.lanes) {
+            this.workers.execute(() -> this.run(lane));
+        }
+    }
+
+    /**
+     * 续约本实例正在处理的兑换，再接管租约已到期的兑换
+     */
+    @Scheduled(fixedDelayString = "#{@shareExchangeProperties.async.leaseMillis / 3}")
+    public void maintainLeases() {
+        Date lockedUntil = this.lockedUntil(new Date());
+        for (List<Integer> ids : Iterables.partition(new ArrayList<>(this.inFlight), RENEW_BATCH_SIZE)) {
+            this.shareExchangeMapper.renewLease(ids, this.owner, lockedUntil);
+        }
+        this.takeOverExpired();
+    }
+
+    /**
+     * 接管租约已到期的 PENDING 兑换并排队，不超过 capacity
+     * @return 接管的个数
+     */
+    int takeOverExpired() {
+        int limit = this.properties.getCapacity() - this.queued.get();
+        if (limit <= 0) {
+            return 0;
+        }
+        Date now = new Date();
+        if (this.shareExchangeMapper.claimExpired(this.owner, now, this.lockedUntil(now), limit) == 0) {
+            return 0;
+        }
+        int count = 0;
+        for (ShareExchange pending : this.shareExchangeMapper.selectPendingByOwner(this.owner)) {
+            // 本实例续约不及时又接管回来的，已经在排队
+            if (this.inFlight.add(pending.getId())) {
+                this.queued.incrementAndGet();
+                this.lane(pending.getUserId()).add(pending);
+                count++;
+            }
+        }
+        if (count > 0) {
+            log.info("接管租约到期的兑换：{} 个", count);
+        }
+        return count;
+    }
+
+    /**
+     * 受理兑换
+     * @param userId
+     * @param shareId
+     * @return
+     */
+    public ShareExchangeDTO submit(Integer userId, Integer shareId) {
+        Share share = this.shareMapper.selectByPrimaryKey(shareId);
+        if (share == null) {
+            throw new ShareNotFoundException(shareId);
+        }
+        if (this.purchasedShareCache.isPurchased(userId, shareId)) {
+            return ShareExchangeDTO.builder()
+                    .shareId(shareId)
+                    .status(ShareExchangeStatusEnum.SUCCESS.toString())
+                    .build();
+        }
+        // 重复提交时返回还在处理中的那一个
+        ShareExchange pending = this.shareExchangeMapper.selectPendingByUserIdAndShareId(userId, shareId);
+        if (pending != null) {
+            return toDTO(pending);
+        }
+
+        if (this.queued.incrementAndGet() > this.properties.getCapacity()) {
+            this.queued.decrementAndGet();
+            throw new ShareExchangeBusyException();
+        }
+        try {
+            Date now = new Date();
+            ShareExchange shareExchange = ShareExchange.builder()
+                    .userId(userId)
+                    .shareId(shareId)
+                    .price(share.getPrice())
+                    .status(ShareExchangeStatusEnum.PENDING.toString())
+                    .createTime(now)
+                    .updateTime(now)
+                    .owner(this.owner)
+                    .lockedUntil(this.lockedUntil(now))
+                    .build();
+            this.shareExchangeMapper.insertSelective(shareExchange);
+            this.inFlight.add(shareExchange.getId());
+            this.lane(userId).add(shareExchange);
+            return toDTO(shareExchange);
+        } catch (RuntimeException e) {
+            this.queued.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * 查询兑换状态，只能查询自己的
+     * @param userId
+     * @param id
+     * @return
+     */
+    public ShareExchangeDTO status(Integer userId, Integer id) {
+        ShareExchange shareExchange = this.shareExchangeMapper.selectByPrimaryKey(id);
+        if (shareExchange == null || !shareExchange.getUserId().equals(userId)) {
+            throw new IllegalArgumentException("参数非法！兑换记录不存在！");
+        }
+        return toDTO(shareExchange);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        // 没处理完的保持 PENDING，租约到期后由其他实例接管
+        this.running = false;
+        this.workers.shutdownNow();
+        this.workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private Date lockedUntil(Date now) {
+        return new Date(now.getTime() + this.properties.getLeaseMillis());
+    }
+
+    private BlockingQueue<ShareExchange> lane(Integer userId) {
+        return this.lanes.get(Math.floorMod(userId.hashCode(), this.lanes.size()));
+    }
+
+    private void run(BlockingQueue<ShareExchange> lane) {
+        List<ShareExchange> batch = new ArrayList<>(this.properties.getBatchSize());
+        while (this.running) {
+            try {
+                batch.clear();
+                if (this.drain(lane, batch)) {
+                    this.processWithRetry(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("处理兑换发生异常，兑换保持 PENDING，ids = {}", ids(batch), e);
+            }
+        }
+    }
+
+    /**
+     * 攒一批：等到第一个后，最多再等 lingerMillis 或攒够 batchSize 个
+     * @return 是否攒到了
+     */
+    private boolean drain(BlockingQueue<ShareExchange> lane, List<ShareExchange> batch) throws InterruptedException {
+        ShareExchange first = lane.poll(500, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return false;
+        }
+        batch.add(first);
+        int batchSize = this.properties.getBatchSize();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.properties.getLingerMillis());
+        while (batch.size() < batchSize) {
+            lane.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                break;
+            }
+            ShareExchange next = lane.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return true;
+    }
+
+    /**
+     * 整批处理，失败时原样重试，保证同一用户的兑换不会被后面的兑换超过
+     */
+    private void processWithRetry(List<ShareExchange> batch) throws InterruptedException {
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    this.transactionTemplate.execute(status -> {
+                        this.process(batch);
+                        return null;
+                    });
+                    return;
+                } catch (RuntimeException e) {
+                    log.warn("兑换批次处理失败，第 {} 次，ids = {}", attempt, ids(batch), e);
+                }
+                if (attempt >= this.properties.getMaxAttempts()) {
+                    log.error("兑换批次多次处理失败，保持 PENDING 等待租约到期后重试，ids = {}", ids(batch));
+                    return;
+                }
+                Thread.sleep(this.properties.getRetryDelayMillis());
+            }
+        } finally {
+            // 不再续约，还是 PENDING 的租约到期后重新排队
+            this.inFlight.removeAll(ids(batch));
+            this.queued.addAndGet(-batch.size());
+        }
+    }
+
+    /**
+     * 在事务中处理一批，用户中心不可用时抛异常回滚整批
+     */
+    private void process(List<ShareExchange> batch) {
+        List<ShareExchange> succeeded = new ArrayList<>();
+        // 本批新兑换成功的，不包括之前已经兑换过的
+        List<ShareExchange> exchanged = new ArrayList<>();
+        List<ShareExchange> claimed = new ArrayList<>();
+        List<Integer> claimIds = new ArrayList<>();
+
+        // 1. 占位，唯一索引冲突说明已经兑换过，不再扣减
+        for (ShareExchange shareExchange : batch) {
+            MidUserShare claim = MidUserShare.builder()
+                    .userId(shareExchange.getUserId())
+                    .shareId(shareExchange.getShareId())
+                    .build();
+            try {
+                this.midUserShareMapper.insert(claim);
+            } catch (DuplicateKeyException e) {
+                succeeded.add(shareExchange);
+                continue;
+            }
+            if (shareExchange.getPrice() == null || shareExchange.getPrice() <= 0) {
+                succeeded.add(shareExchange);
+                exchanged.add(shareExchange);
+            } else {
+                claimed.add(shareExchange);
+                claimIds.add(claim.getId());
+            }
+        }
+
+        // 2. 一次调用扣减整批积分
+        List<ShareExchange> failed = new ArrayList<>();
+        if (!claimed.isEmpty()) {
+            List<UserAddBonusItemDTO> items = claimed.stream()
+                    .map(shareExchange -> UserAddBonusItemDTO.builder()
+                            .requestId(REQUEST_ID_PREFIX + shareExchange.getId())
+                            .userId(shareExchange.getUserId())
+                            .bonus(0 - shareExchange.getPrice())
+                            .build())
+                    .collect(Collectors.toList());
+            List<UserAddBonusResultDTO> results = this.userCenterFeignClient.addBonusBatch(items);
+            // 降级时返回 null
+            if (results == null) {
+                throw new IllegalStateException("批量扣减积分失败！");
+            }
+            Map<String, UserAddBonusResultDTO> resultMap = results.stream()
+                    .collect(Collectors.toMap(UserAddBonusResultDTO::getRequestId, Function.identity(), (a, b) -> b));
+            for (int i = 0; i < claimed.size(); i++) {
+                UserAddBonusResultDTO result = resultMap.get(items.get(i).getRequestId());
+                if (result == null) {
+                    throw new IllegalStateException("批量扣减积分结果缺失！requestId：" + items.get(i).getRequestId());
+                }
+                if (Boolean.TRUE.equals(result.getSuccess())) {
+                    succeeded.add(claimed.get(i));
+                    exchanged.add(claimed.get(i));
+                } else {
+                    failed.add(claimed.get(i));
+                    this.midUserShareMapper.deleteByPrimaryKey(claimIds.get(i));
+                }
+            }
+        }
+
+        // 3. 修改兑换记录状态
+        if (!succeeded.isEmpty()) {
+            this.shareExchangeMapper.updateStatusByIds(ids(succeeded), ShareExchangeStatusEnum.SUCCESS.toString(), null);
+        }
+        if (!failed.isEmpty()) {
+            this.shareExchangeMapper.updateStatusByIds(ids(failed), ShareExchangeStatusEnum.FAILED.toString(), "用户积分不够用！");
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                for (ShareExchange shareExchange : succeeded) {
+                    purchasedShareCache.markPurchased(shareExchange.getUserId(), shareExchange.getShareId());
+                    readYourWritesTracker.markWrite(shareExchange.getUserId());
+                }
+                for (ShareExchange shareExchange : exchanged) {
+                    shareBuyCountWriter.increment(shareExchange.getShareId());
+                    shareRanking.onExchanged(shareExchange.getShareId());
+                }
+            }
+        });
+    }
+
+    private static List<Integer> ids(List<ShareExchange> shareExchanges) {
+        return shareExchanges.stream()
+                .map(ShareExchange::getId)
+                .collect(Collectors.toList());
+    }
+
+    private static ShareExchangeDTO toDTO(ShareExchange shareExchange) {
+        return ShareExchangeDTO.builder()
+                .id(shareExchange.getId())
+                .shareId(shareExchange.getShareId())
+                .status(shareExchange.getStatus())
+                .reason(shareExchange.getReason())
+                .createTime(shareExchange.getCreateTime())
+                .updateTime(shareExchange.getUpdateTime())
+                .build();
+    }
+
+}
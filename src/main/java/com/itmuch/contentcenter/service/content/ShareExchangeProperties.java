@@ -0,0 +1,90 @@
+package com.itmuch.contentcenter.service.content;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 积分兑换配置
+ *  对应 application.yml 中的 share-exchange
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "share-exchange")
+public class ShareExchangeProperties {
+
+    /**
+     * 幂等键结果最多保存多少个
+     */
+    private long idempotencyMaximumSize = 100_000;
+
+    /**
+     * 幂等键结果保存多久，单位秒，客户端应在这个时间内完成重试
+     */
+    private long idempotencyExpireSeconds = 600;
+
+    /**
+     * 兑换数多久写入一次数据库，单位秒
+     */
+    private long buyCountFlushSeconds = 5;
+
+    /**
+     * 兑换数每条 update 语句最多更新多少个分享
+     */
+    private int buyCountFlushBatchSize = 500;
+
+    /**
+     * 同步兑换扣减积分结果未知(超时、降级)时，同一个 requestId 最多调用几次，之后撤销扣减
+     */
+    private int deductMaxAttempts = 3;
+
+    /**
+     * 异步兑换
+     */
+    private Async async = new Async();
+
+    @Data
+    public static class Async {
+
+        /**
+         * 是否开启异步兑换，开启后才有 /shares/exchange-async 接口
+         */
+        private boolean enabled = false;
+
+        /**
+         * 处理线程数，同一个用户的兑换总是由同一个线程按受理顺序处理
+         */
+        private int lanes = 4;
+
+        /**
+         * 最多排队多少个兑换，超过后拒绝受理
+         */
+        private int capacity = 10_000;
+
+        /**
+         * 每批最多扣减多少个兑换
+         */
+        private int batchSize = 100;
+
+        /**
+         * 凑批最多等待多久，单位毫秒
+         */
+        private long lingerMillis = 20;
+
+        /**
+         * 用户中心不可用时，整批重试的间隔，单位毫秒
+         */
+        private long retryDelayMillis = 1000;
+
+        /**
+         * 用户中心不可用时，整批最多尝试几次，之后保持 PENDING，租约到期后重新排队
+         */
+        private int maxAttempts = 5;
+
+        /**
+         * 处理租约，单位毫秒；每 1/3 租约续约一次并接管其他实例租约到期的兑换
+         */
+        private long leaseMillis = 30000;
+    }
+
+}
@@ -1,27 +1,52 @@
 package com.itmuch.contentcenter.service.content;
 
+import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
 import com.github.pagehelper.PageInfo;
+import com.itmuch.contentcenter.cache.PurchasedShareCache;
+import com.itmuch.contentcenter.cache.ShareCache;
+import com.itmuch.contentcenter.cache.ShareCountCache;
 import com.itmuch.contentcenter.dao.content.MidUserShareMapper;
 import com.itmuch.contentcenter.dao.content.ShareMapper;
+import com.itmuch.contentcenter.datasource.ReadFromReplica;
+import com.itmuch.contentcenter.datasource.ReadYourWritesTracker;
+import com.itmuch.contentcenter.domain.dto.content.ShareCursorPageDTO;
 import com.itmuch.contentcenter.domain.dto.content.ShareDTO;
-import com.itmuch.contentcenter.domain.dto.user.UserAddBonseDTO;
+import com.itmuch.contentcenter.domain.dto.content.ShareListItemDTO;
+import com.itmuch.contentcenter.domain.dto.user.UserAddBonusItemDTO;
+import com.itmuch.contentcenter.domain.dto.user.UserAddBonusResultDTO;
 import com.itmuch.contentcenter.domain.dto.user.UserDTO;
 import com.itmuch.contentcenter.domain.entity.content.MidUserShare;
 import com.itmuch.contentcenter.domain.entity.content.Share;
+import com.itmuch.contentcenter.exception.ShareNotFoundException;
 import com.itmuch.contentcenter.feignclient.UserCenterFeignClient;
+import com.itmuch.contentcenter.feignclient.batch.UserCenterBatchLoader;
+import com.itmuch.contentcenter.search.ShareRanking;
+import com.itmuch.contentcenter.search.ShareTitleIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.rocketmq.spring.core.RocketMQTemplate;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cloud.client.ServiceInstance;
 import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.client.RestTemplate;
 
 import javax.servlet.http.HttpServletRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
@@ -30,6 +55,13 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor(onConstructor = @__(@Autowired))
 public class ShareService {
 
+    /**
+     * 同步兑换扣减积分的 requestId 前缀，异步兑换用 share-exchange-兑换记录id
+     */
+    private static final String EXCHANGE_REQUEST_ID_PREFIX = "share-buy-";
+
+    private static final String CANCEL_REQUEST_ID_SUFFIX = "-cancel";
+
     private final ShareMapper shareMapper;
 
     private final RestTemplate restTemplate;
@@ -42,12 +74,38 @@ public class ShareService {
 
     private final MidUserShareMapper midUserShareMapper;
 
+    private final ShareCache shareCache;
+
+    private final UserCenterBatchLoader userCenterBatchLoader;
+
+    private final PurchasedShareCache purchasedShareCache;
+
+    private final ShareCountCache shareCountCache;
 
+    private final ShareTitleIndex shareTitleIndex;
+
+    private final ReadYourWritesTracker readYourWritesTracker;
+
+    private final ShareBuyCountWriter shareBuyCountWriter;
+
+    private final ShareRanking shareRanking;
+
+    private final ShareExchangeProperties shareExchangeProperties;
+
+    /**
+     * 分享详情
+     *  未命中时的加载结果会写入缓存，所以不走从库：从库落后时可能在审核删除缓存之后又写回旧数据
+     * @param id
+     * @return
+     */
     public ShareDTO findById(Integer id) {
         //return findByIdUrl(id);
         //return findByIdByInstance(id);
         //return findByIdByRibbon(id);
-        return findByIdByFeign(id);
+        //return findByIdByFeign(id);
+
+        // 两级缓存，未命中时再通过 feign 组装
+        return shareCache.get(id, this::findByIdByFeign);
     }
 
     /**
@@ -140,6 +198,8 @@ public class ShareService {
         // 消息装配
         BeanUtils.copyProperties(share, shareDTO);
         shareDTO.setWxNickname(userDTO.getWxNickname());
+        // 用户中心降级返回的默认用户，组装结果不缓存
+        shareDTO.setDegraded(userDTO.isFallback());
         return shareDTO;
     }
 
@@ -151,16 +211,34 @@ public class ShareService {
     public ShareDTO findByIdByFeign(Integer id) {
         // 获取分享详情
         Share share = shareMapper.selectByPrimaryKey(id);
+        if (share == null) {
+            throw new ShareNotFoundException(id);
+        }
 
         // 发布人id
         Integer userId = share.getUserId();
-        UserDTO userDTO = userCenterFeignClient.findById(userId);
+        // 并发的查询会被合并成一次批量调用
+        UserDTO userDTO = userCenterBatchLoader.load(userId);
+
+        return toShareDTO(share, userDTO);
+    }
 
+    /**
+     * 消息装配
+     * @param share
+     * @param userDTO 发布人，发布人已不存在时为 null，昵称为空字符串
+     * @return
+     */
+    static ShareDTO toShareDTO(Share share, UserDTO userDTO) {
         ShareDTO shareDTO = new ShareDTO();
-        //消息装配
         BeanUtils.copyProperties(share, shareDTO);
+        if (userDTO == null) {
+            shareDTO.setWxNickname("");
+            return shareDTO;
+        }
         shareDTO.setWxNickname(userDTO.getWxNickname());
-
+        // 用户中心降级返回的默认用户，组装结果不缓存
+        shareDTO.setDegraded(userDTO.isFallback());
         return shareDTO;
     }
 
@@ -171,96 +249,322 @@ public class ShareService {
      * @param pageSize
      * @return
      */
-    public PageInfo<Share> q(String title, Integer pageNo, Integer pageSize, Integer userId) {
+    @ReadFromReplica
+    public PageInfo<ShareListItemDTO> q(String title, Integer pageNo, Integer pageSize, Integer userId) {
+        // 只规范化一次，标题索引、列表和总数用同一个标题条件
+        String normalizedTitle = ShareTitleIndex.normalize(title);
+
+        // 有标题条件并且标题索引已构建好，从索引中找到分享id，再按主键查询
+        if (!normalizedTitle.isEmpty() && this.shareTitleIndex.isReady()) {
+            return this.qByTitleIndex(normalizedTitle, pageNo, pageSize, userId);
+        }
 
         // 要开始分页了...
         // 它会切入下面这条不分页的SQL，自动拼接分页的SQL
         // 本质是Mybatis的拦截器，自动加上了limit
-        PageHelper.startPage(pageNo, pageSize);
+        // count = false : 不执行 count(*)，总数从 ShareCountCache 获取
+        Page<ShareListItemDTO> page = PageHelper.startPage(pageNo, pageSize, false);
+
+        // 不分页的SQL，只查询列表展示需要的字段
+        String likeTitle = escapeLike(normalizedTitle);
+        List<ShareListItemDTO> items = this.shareMapper.selectListItemsByParam(likeTitle);
+        page.setTotal(this.shareCountCache.count(likeTitle));
 
-        // 不分页的SQL
-        List<Share> shares = this.shareMapper.selectByParam(title);
+        this.fillDownloadUrl(items, userId);
 
+        // PageInfo 是一个工具类，需要传入 PageHelper 返回的 Page 才能拿到总数
+        PageInfo<ShareListItemDTO> sharePageInfo = new PageInfo<>(items);
+        return sharePageInfo;
+    }
 
-        List<Share> sharesDeal;
-        // 1. 如果用户未登录，那么downloadUrl全部设为null
-        if (userId == null) {
-            sharesDeal = shares.stream()
-                    .peek(share -> {
-                        share.setDownloadUrl(null);
-                    })
-                    .collect(Collectors.toList());
+    /**
+     * 通过标题倒排索引分页查询，避免 title like '%xx%' 全表扫描
+     * @param title
+     * @param pageNo
+     * @param pageSize
+     * @param userId
+     * @return
+     */
+    private PageInfo<ShareListItemDTO> qByTitleIndex(String title, Integer pageNo, Integer pageSize, Integer userId) {
+        List<Integer> ids = this.shareTitleIndex.search(title);
+
+        Page<ShareListItemDTO> page = new Page<>(pageNo, pageSize, false);
+        page.setTotal(ids.size());
+
+        int fromIndex = (int) Math.min((long) Math.max(pageNo - 1, 0) * pageSize, ids.size());
+        int toIndex = Math.min(fromIndex + pageSize, ids.size());
+        List<Integer> pageIds = ids.subList(fromIndex, toIndex);
+        if (!pageIds.isEmpty()) {
+            List<ShareListItemDTO> items = this.shareMapper.selectListItemsByIds(pageIds);
+            // 和 LIKE 查询(order by id)同一个顺序
+            items.sort(Comparator.comparing(ShareListItemDTO::getId));
+            page.addAll(items);
         }
-        // 2. 如果用户登录了，那么查询一下mid_user_share，如果没有数据，那么这条share的downloadUrl也设为null
-        else {
-            sharesDeal = shares.stream()
-                    .peek(share -> {
-                        MidUserShare midUserShare = this.midUserShareMapper.selectOne(
-                                MidUserShare.builder()
-                                        .userId(userId)
-                                        .shareId(share.getId())
-                                        .build()
-                        );
-                        if (midUserShare == null) {
-                            share.setDownloadUrl(null);
-                        }
-                    })
-                    .collect(Collectors.toList());
+
+        this.fillDownloadUrl(page, userId);
+        return new PageInfo<>(page);
+    }
+
+    /**
+     * 游标(seek)分页查询
+     *  按 (create_time, id) 倒序，翻到多深都只扫描一页的数据，不查询总数
+     * @param title
+     * @param after 上一页返回的 nextCursor，第一页传 null
+     * @param pageSize
+     * @param userId
+     * @return
+     */
+    @ReadFromReplica
+    public ShareCursorPageDTO<ShareListItemDTO> seek(String title, String after, Integer pageSize, Integer userId) {
+        Date afterCreateTime = null;
+        Integer afterId = null;
+        if (StringUtils.isNotBlank(after)) {
+            String[] cursor = decodeCursor(after);
+            afterCreateTime = new Date(Long.parseLong(cursor[0]));
+            afterId = Integer.valueOf(cursor[1]);
         }
 
-        // PageInfo 是一个工具类
-        PageInfo<Share> sharePageInfo = new PageInfo<>(sharesDeal);
-        return sharePageInfo;
+        // 多查一条，用来判断是否还有下一页
+        List<ShareListItemDTO> items = this.shareMapper.selectListItemsByParamAfter(
+                escapeLike(ShareTitleIndex.normalize(title)), afterCreateTime, afterId, pageSize + 1);
+        boolean hasNextPage = items.size() > pageSize;
+        if (hasNextPage) {
+            items = items.subList(0, pageSize);
+        }
+
+        this.fillDownloadUrl(items, userId);
+
+        String nextCursor = null;
+        if (hasNextPage) {
+            ShareListItemDTO last = items.get(items.size() - 1);
+            nextCursor = encodeCursor(last.getCreateTime(), last.getId());
+        }
+        return ShareCursorPageDTO.<ShareListItemDTO>builder()
+                .list(items)
+                .nextCursor(nextCursor)
+                .hasNextPage(hasNextPage)
+                .build();
+    }
+
+    /**
+     * 列表默认不查询 downloadUrl
+     *  只有用户登录了，并且一次集合查询确认兑换过的分享，才查询 downloadUrl
+     *  不走已兑换位图：位图只知道本实例的兑换，"未兑换"还要再查库，反而多一次查询
+     * @param items
+     * @param userId
+     */
+    private void fillDownloadUrl(List<ShareListItemDTO> items, Integer userId) {
+        if (userId == null || items.isEmpty()) {
+            return;
+        }
+        List<Integer> shareIds = items.stream()
+                .map(ShareListItemDTO::getId)
+                .collect(Collectors.toList());
+        List<Integer> purchasedShareIds = this.midUserShareMapper.selectPurchasedShareIds(userId, shareIds);
+        if (purchasedShareIds.isEmpty()) {
+            return;
+        }
+
+        Map<Integer, String> downloadUrls = this.shareMapper.selectDownloadUrlsByIds(purchasedShareIds)
+                .stream()
+                .filter(share -> share.getDownloadUrl() != null)
+                .collect(Collectors.toMap(Share::getId, Share::getDownloadUrl));
+        items.forEach(item -> item.setDownloadUrl(downloadUrls.get(item.getId())));
+    }
+
+    /**
+     * 转义 LIKE 的通配符，关键词中的 % 和 _ 按普通字符匹配，和标题索引一致
+     */
+    private static String escapeLike(String title) {
+        return title.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
     }
 
     /**
-     * 积分兑换指定ID
+     * 游标对客户端不透明：base64("创建时间毫秒_id")
+     */
+    private static String encodeCursor(Date createTime, Integer id) {
+        String raw = createTime.getTime() + "_" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("_");
+            if (parts.length == 2) {
+                // 校验格式
+                Long.parseLong(parts[0]);
+                Integer.parseInt(parts[1]);
+                return parts;
+            }
+        } catch (IllegalArgumentException e) {
+            log.debug("游标解析失败：{}", cursor, e);
+        }
+        throw new IllegalArgumentException("参数非法！游标不合法！");
+    }
+
+    /**
+     * 积分兑换，先占位再扣积分，整个过程在一个本地事务中
+     *  1. 插入 mid_user_share 占位，(user_id, share_id) 唯一索引保证并发时只有一个请求能插入成功，
+     *     其他请求会等待先插入的事务结束，提交了则视为已兑换直接返回，回滚了则由它继续兑换；
+     *     幂等键和占位一起保存，其他实例收到同一个幂等键的重试也能识别
+     *  2. 调用用户中心扣减积分，只有一次远程调用：用户中心按 requestId 去重，积分不够时整项不生效，不会扣成负数
+     *  3. 扣减结果未知(超时、降级)时用同一个 requestId 重试；仍然未知则按 requestId 撤销后回滚占位，
+     *     撤销由用户中心保证：扣减生效过才退回，还没到达的扣减以后也不再生效
+     *  4. 扣减成功后本地事务如果回滚(提交失败等)，事务结束后按 requestId 撤销
      * @param id
+     * @param idempotencyKey 请求头 Idempotency-Key，可以为空
      * @param request
      * @return
      */
-    public Share exchangeById(Integer id, HttpServletRequest request) {
+    @Transactional(rollbackFor = Exception.class)
+    public Share exchangeById(Integer id, String idempotencyKey, HttpServletRequest request) {
         Object userId = request.getAttribute("id");
         Integer integerUserId = (Integer) userId;
 
         // 1. 根据id查询share，校验是否存在
         Share share = this.shareMapper.selectByPrimaryKey(id);
         if (share == null) {
-            throw new IllegalArgumentException("该分享不存在！");
+            throw new ShareNotFoundException(id);
         }
-        Integer price = share.getPrice();
 
-        // 2. 如果当前用户已经兑换过该分享，则直接返回
-        MidUserShare midUserShare = this.midUserShareMapper.selectOne(
-                MidUserShare.builder()
-                        .shareId(id)
-                        .userId(integerUserId)
-                        .build()
-        );
-        if (midUserShare != null) {
+        // 2. 位图缓存命中说明已经兑换过，直接返回
+        if (this.purchasedShareCache.isPurchased(integerUserId, id)) {
             return share;
         }
 
-        // 3. 根据当前登录的用户id，查询积分是否够
-        UserDTO userDTO = this.userCenterFeignClient.findById(integerUserId);
-        if (price > userDTO.getBonus()) {
-            throw new IllegalArgumentException("用户积分不够用！");
+        // 3. 插入占位，唯一索引冲突说明已经兑换过(可能是其他实例、其他请求刚兑换的)
+        try {
+            this.midUserShareMapper.insert(
+                    MidUserShare.builder()
+                            .userId(integerUserId)
+                            .shareId(id)
+                            .idempotencyKey(StringUtils.trimToNull(idempotencyKey))
+                            .build()
+            );
+        } catch (DuplicateKeyException e) {
+            this.purchasedShareCache.markPurchased(integerUserId, id);
+            return share;
+        }
+
+        // 4. 扣减积分
+        Integer price = share.getPrice();
+        if (price != null && price > 0) {
+            String requestId = EXCHANGE_REQUEST_ID_PREFIX + UUID.randomUUID();
+            this.deductBonus(integerUserId, price, requestId);
+            this.cancelDeductionOnRollback(integerUserId, price, requestId);
         }
 
-        // 4. 扣减积分 & 往mid_user_share里插入一条数据
-        this.userCenterFeignClient.addBonus(
-                UserAddBonseDTO.builder()
-                        .userId(integerUserId)
+        afterCommit(() -> {
+            this.purchasedShareCache.markPurchased(integerUserId, id);
+            this.shareBuyCountWriter.increment(id);
+            this.shareRanking.onExchanged(id);
+            // 复制延迟窗口内，该用户的只读查询走主库
+            this.readYourWritesTracker.markWrite(integerUserId);
+        });
+        return share;
+    }
+
+    /**
+     * 按 requestId 扣减积分，结果未知时用同一个 requestId 重试，失败时抛异常让本地事务回滚占位
+     * @param userId
+     * @param price
+     * @param requestId
+     */
+    private void deductBonus(Integer userId, Integer price, String requestId) {
+        UserAddBonusResultDTO result = this.addBonusIdempotently(
+                UserAddBonusItemDTO.builder()
+                        .requestId(requestId)
+                        .userId(userId)
                         .bonus(0 - price)
                         .build()
         );
-        this.midUserShareMapper.insert(
-                MidUserShare.builder()
-                        .userId(integerUserId)
-                        .shareId(id)
+        if (result == null) {
+            // 可能已经扣减了，不能直接回滚
+            this.cancelDeduction(userId, price, requestId);
+            throw new IllegalStateException("扣减积分失败！");
+        }
+        if (!Boolean.TRUE.equals(result.getSuccess())) {
+            throw new IllegalArgumentException("用户积分不够用！");
+        }
+    }
+
+    /**
+     * 积分已经扣减，本地事务没有提交成功时按 requestId 撤销
+     * @param userId
+     * @param price
+     * @param requestId
+     */
+    private void cancelDeductionOnRollback(Integer userId, Integer price, String requestId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    cancelDeduction(userId, price, requestId);
+                }
+            }
+        });
+    }
+
+    /**
+     * 撤销 requestId 的扣减：生效过才退回，还没到达的扣减以后也不再生效
+     *  撤销本身也按 requestId 去重，多次重试仍然未知时记录 requestId，按它人工对账
+     */
+    private void cancelDeduction(Integer userId, Integer price, String requestId) {
+        UserAddBonusResultDTO result = this.addBonusIdempotently(
+                UserAddBonusItemDTO.builder()
+                        .requestId(requestId + CANCEL_REQUEST_ID_SUFFIX)
+                        .cancelRequestId(requestId)
+                        .userId(userId)
+                        .bonus(price)
                         .build()
         );
-        return share;
+        if (result == null) {
+            log.error("撤销扣减积分失败，需要按 requestId 人工对账，requestId = {}，userId = {}，bonus = {}",
+                    requestId, userId, price);
+        }
+    }
+
+    /**
+     * 同一个 requestId 最多调用 deductMaxAttempts 次，直到得到明确的结果
+     * @return 结果未知(超时、降级、结果缺失)时返回 null
+     */
+    private UserAddBonusResultDTO addBonusIdempotently(UserAddBonusItemDTO item) {
+        int maxAttempts = this.shareExchangeProperties.getDeductMaxAttempts();
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                // 降级时返回 null
+                List<UserAddBonusResultDTO> results = this.userCenterFeignClient.addBonusBatch(
+                        Collections.singletonList(item));
+                if (results != null) {
+                    for (UserAddBonusResultDTO result : results) {
+                        if (item.getRequestId().equals(result.getRequestId())) {
+                            return result;
+                        }
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.warn("加减积分结果未知，第 {} 次，requestId = {}", attempt, item.getRequestId(), e);
+            }
+        }
+        return null;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,47 @@
+package com.itmuch.contentcenter.service.content;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 启动时缓存预热配置
+ *  对应 application.yml 中的 share-warm-up
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "share-warm-up")
+public class ShareWarmUpProperties {
+
+    /**
+     * 是否开启预热
+     */
+    private boolean enabled = true;
+
+    /**
+     * 预热多少个分享
+     */
+    private int size = 200;
+
+    /**
+     * 预热哪些分享：RECENT 最新的，MOST_BOUGHT 兑换最多的
+     */
+    private Strategy strategy = Strategy.RECENT;
+
+    /**
+     * 预热超时时间，单位秒，超时后不再等待，直接视为就绪
+     */
+    private long timeoutSeconds = 30;
+
+    public enum Strategy {
+        /**
+         * 最新的
+         */
+        RECENT,
+        /**
+         * 兑换最多的
+         */
+        MOST_BOUGHT
+    }
+
+}
@@ -0,0 +1,123 @@
+-- content_center 表结构升级脚本，按功能追加，执行前请先在测试库验证
+
+-- 游标分页 /shares/q/seek : audit_status = 'PASS' order by create_time desc, id desc
+ALTER TABLE `share` ADD INDEX `idx_audit_status_create_time_id` (`audit_status`, `create_time`, `id`);
+
+-- 流式导出 /admin/shares/export : 按修改时间过滤
+ALTER TABLE `share` ADD INDEX `idx_update_time` (`update_time`);
+
+-- 积分兑换 /shares/exchange/{id} : 同一用户同一分享只能有一条兑换记录，先插入占位再扣积分
+-- 添加前先清理历史重复数据，只保留 id 最小的一条
+DELETE m1 FROM `mid_user_share` m1
+  JOIN `mid_user_share` m2
+    ON m1.`user_id` = m2.`user_id` AND m1.`share_id` = m2.`share_id` AND m1.`id` > m2.`id`;
+ALTER TABLE `mid_user_share` ADD UNIQUE INDEX `uk_user_id_share_id` (`user_id`, `share_id`);
+-- 兑换幂等键和占位一起保存，重试落到其他实例也能识别；加列和索引都是在线 DDL(MySQL 5.6+)，不阻塞读写
+ALTER TABLE `mid_user_share`
+  ADD COLUMN `idempotency_key` varchar(64) DEFAULT NULL COMMENT '兑换请求的幂等键',
+  ADD UNIQUE INDEX `uk_user_id_idempotency_key` (`user_id`, `idempotency_key`);
+
+-- 异步积分兑换 /shares/exchange-async : 兑换受理记录
+CREATE TABLE `share_exchange` (
+  `id` int(11) NOT NULL AUTO_INCREMENT COMMENT 'id',
+  `user_id` int(11) NOT NULL COMMENT 'user.id',
+  `share_id` int(11) NOT NULL COMMENT 'share.id',
+  `price` int(11) NOT NULL DEFAULT '0' COMMENT '受理时的价格(积分)',
+  `status` varchar(10) NOT NULL DEFAULT 'PENDING' COMMENT '状态 PENDING,SUCCESS,FAILED',
+  `reason` varchar(255) DEFAULT NULL COMMENT '失败原因',
+  `create_time` datetime NOT NULL COMMENT '创建时间',
+  `update_time` datetime NOT NULL COMMENT '修改时间',
+  `owner` varchar(64) DEFAULT NULL COMMENT '处理中的实例',
+  `locked_until` datetime DEFAULT NULL COMMENT '处理租约到期时间，到期还是 PENDING 的由其他实例接管',
+  PRIMARY KEY (`id`),
+  KEY `idx_status_id` (`status`, `id`),
+  KEY `idx_status_locked_until` (`status`, `locked_until`),
+  KEY `idx_user_id_share_id_status` (`user_id`, `share_id`, `status`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='分享兑换记录';
+
+-- 分享排行榜 /shares/top : 启动和定时重建时取兑换最多的前 N 个
+ALTER TABLE `share` ADD INDEX `idx_audit_status_buy_count_id` (`audit_status`, `buy_count`, `id`);
+
+-- 审核加积分消息的发件箱(outbox)模式 : 和审核在一个本地事务中写入，OutboxRelay 后台转发
+CREATE TABLE `outbox_message` (
+  `id` int(11) NOT NULL AUTO_INCREMENT COMMENT 'id',
+  `payload` varchar(2000) NOT NULL COMMENT '消息内容(JSON)',
+  `sent` tinyint(1) NOT NULL DEFAULT '0' COMMENT '是否已发送',
+  `create_time` datetime NOT NULL COMMENT '创建时间',
+  `sent_time` datetime DEFAULT NULL COMMENT '发送时间',
+  `owner` varchar(64) DEFAULT NULL COMMENT '认领者，多个实例转发前先认领',
+  `locked_until` datetime DEFAULT NULL COMMENT '认领到期时间，到期还没发送的可以重新认领',
+  PRIMARY KEY (`id`),
+  KEY `idx_sent_id` (`sent`, `id`),
+  KEY `idx_owner` (`owner`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='发件箱';
+
+-- 事务消息回查 : 按 transaction_Id 查询事务日志
+ALTER TABLE `rocketmq_transaction_log` ADD UNIQUE INDEX `uk_transaction_id` (`transaction_Id`);
+
+-- 事务日志保留 : 增加创建时间并按天分区，TransactionLogRetention 定时删除过期分区(没有分区时分批 delete)
+-- 直接 ALTER 原表(加列、改主键、PARTITION BY)会复制整张表，期间阻塞写入，审核的本地事务会卡住；
+-- 所以建一张分区的新表，分批回填后 RENAME 交换，只有 RENAME 需要短暂的元数据锁。
+-- 分区表的主键和唯一索引必须包含分区字段：transaction_Id 在表上不再唯一，
+-- 由写入事务日志的 insert ... where not exists 保证(RocketmqTransactionLogMapper.insertIfAbsent)。
+-- 已有数据的 create_time 记为昨天，放在昨天的分区，保留期过后整个分区删除。
+
+-- 1. 新表：结构和原表一样，表是空的，ALTER 不需要复制数据
+CREATE TABLE `rocketmq_transaction_log_new` LIKE `rocketmq_transaction_log`;
+ALTER TABLE `rocketmq_transaction_log_new`
+  ADD COLUMN `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  DROP PRIMARY KEY, ADD PRIMARY KEY (`id`, `create_time`),
+  DROP INDEX `uk_transaction_id`, ADD INDEX `idx_transaction_id` (`transaction_Id`, `create_time`);
+-- 分区边界必须是常量，按执行日期拼出语句：昨天(历史数据)、今天两个分区和 p_max，
+-- 之后每天的分区由 TransactionLogRetention 提前从 p_max 中拆出，拆分时 p_max 是空的，不会搬数据
+SET @partition_ddl = CONCAT(
+  'ALTER TABLE `rocketmq_transaction_log_new` PARTITION BY RANGE (TO_DAYS(`create_time`)) (',
+  'PARTITION p', DATE_FORMAT(CURDATE() - INTERVAL 1 DAY, '%Y%m%d'), ' VALUES LESS THAN (', TO_DAYS(CURDATE()), '), ',
+  'PARTITION p', DATE_FORMAT(CURDATE(), '%Y%m%d'), ' VALUES LESS THAN (', TO_DAYS(CURDATE() + INTERVAL 1 DAY), '), ',
+  'PARTITION p_max VALUES LESS THAN MAXVALUE)'
+);
+PREPARE partition_stmt FROM @partition_ddl;
+EXECUTE partition_stmt;
+DEALLOCATE PREPARE partition_stmt;
+
+-- 2. 回填：按 id 范围每批 10000 行，每批只锁这一批的行，批之间暂停；可以在业务低峰多次执行，已回填的跳过
+DROP PROCEDURE IF EXISTS `backfill_rocketmq_transaction_log`;
+DELIMITER //
+CREATE PROCEDURE `backfill_rocketmq_transaction_log`()
+BEGIN
+  DECLARE next_id INT;
+  DECLARE max_id INT;
+  SELECT IFNULL(MAX(`id`), 0) INTO next_id FROM `rocketmq_transaction_log_new`;
+  SELECT IFNULL(MAX(`id`), 0) INTO max_id FROM `rocketmq_transaction_log`;
+  WHILE next_id < max_id DO
+    INSERT IGNORE INTO `rocketmq_transaction_log_new` (`id`, `transaction_Id`, `log`, `create_time`)
+      SELECT `id`, `transaction_Id`, `log`, CURDATE() - INTERVAL 1 DAY
+      FROM `rocketmq_transaction_log`
+      WHERE `id` > next_id AND `id` <= next_id + 10000;
+    SET next_id = next_id + 10000;
+    DO SLEEP(0.1);
+  END WHILE;
+END //
+DELIMITER ;
+CALL `backfill_rocketmq_transaction_log`();
+DROP PROCEDURE `backfill_rocketmq_transaction_log`;
+
+-- 3. 交换：新表的自增值跳过回填期间原表新写入的 id，RENAME 原子地交换两张表
+SET @backfilled_max_id = (SELECT IFNULL(MAX(`id`), 0) FROM `rocketmq_transaction_log_new`);
+SET @auto_increment_ddl = CONCAT(
+  'ALTER TABLE `rocketmq_transaction_log_new` AUTO_INCREMENT = ',
+  (SELECT IFNULL(MAX(`id`), 0) + 100000 FROM `rocketmq_transaction_log`)
+);
+PREPARE auto_increment_stmt FROM @auto_increment_ddl;
+EXECUTE auto_increment_stmt;
+DEALLOCATE PREPARE auto_increment_stmt;
+RENAME TABLE `rocketmq_transaction_log` TO `rocketmq_transaction_log_old`,
+  `rocketmq_transaction_log_new` TO `rocketmq_transaction_log`;
+
+-- 4. 补齐：回填之后、交换之前原表新写入的行。这段时间内的回查查不到会返回 UNKNOWN，broker 稍后再回查
+INSERT IGNORE INTO `rocketmq_transaction_log` (`id`, `transaction_Id`, `log`, `create_time`)
+  SELECT o.`id`, o.`transaction_Id`, o.`log`, NOW()
+  FROM `rocketmq_transaction_log_old` o
+  WHERE o.`id` > @backfilled_max_id
+  AND NOT EXISTS (SELECT 1 FROM `rocketmq_transaction_log` n WHERE n.`id` = o.`id`);
+-- 确认无误后再删除原表：DROP TABLE `rocketmq_transaction_log_old`;
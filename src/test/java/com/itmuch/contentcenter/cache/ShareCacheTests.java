@@ -0,0 +1,64 @@
+package com.itmuch.contentcenter.cache;
+
+import com.itmuch.contentcenter.domain.dto.content.ShareDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 分享详情缓存测试：降级数据不缓存，删除缓存后旧值不会回填
+ */
+class ShareCacheTests {
+
+    private final ShareCache shareCache = newShareCache();
+
+    @Test
+    void degradedShareIsNotCached() {
+        AtomicInteger loads = new AtomicInteger();
+        ShareDTO degraded = ShareDTO.builder().id(1).wxNickname("FallbackFactory一个默认用户").degraded(true).build();
+
+        this.shareCache.get(1, id -> {
+            loads.incrementAndGet();
+            return degraded;
+        });
+        ShareDTO loaded = this.shareCache.get(1, id -> {
+            loads.incrementAndGet();
+            return ShareDTO.builder().id(1).wxNickname("大目").build();
+        });
+
+        assertEquals(2, loads.get());
+        assertEquals("大目", loaded.getWxNickname());
+        assertFalse(this.shareCache.put(1, degraded, this.shareCache.loadMark()));
+    }
+
+    @Test
+    void loadStartedBeforeEvictDoesNotRefillOldValue() {
+        // 加载开始时还是旧值，加载过程中审核提交并删除了缓存
+        ShareDTO stale = this.shareCache.get(2, id -> {
+            this.shareCache.evict(2);
+            return ShareDTO.builder().id(2).auditStatus("NOT_YET").build();
+        });
+        assertEquals("NOT_YET", stale.getAuditStatus());
+
+        ShareDTO fresh = this.shareCache.get(2, id -> ShareDTO.builder().id(2).auditStatus("PASS").build());
+        assertEquals("PASS", fresh.getAuditStatus());
+
+        // 预热、热点刷新：加载前取的 loadMark 早于删除缓存，放弃写入
+        long loadMark = this.shareCache.loadMark();
+        this.shareCache.evict(3);
+        assertFalse(this.shareCache.put(3, ShareDTO.builder().id(3).build(), loadMark));
+        assertTrue(this.shareCache.put(3, ShareDTO.builder().id(3).build(), this.shareCache.loadMark()));
+    }
+
+    private static ShareCache newShareCache() {
+        ShareCacheProperties properties = new ShareCacheProperties();
+        properties.setSharedEnabled(true);
+        return new ShareCache(properties, new SimpleMeterRegistry());
+    }
+
+}
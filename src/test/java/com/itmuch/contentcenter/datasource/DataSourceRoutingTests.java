@@ -0,0 +1,173 @@
+package com.itmuch.contentcenter.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.Cookie;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 读写分离路由测试：主库和从库是两个 H2 内存库，各有一行标记自己是哪个库
+ *  读己之写：跨实例的 cookie 标记、按从库延迟计算的窗口
+ */
+class DataSourceRoutingTests {
+
+    private EmbeddedDatabase primary;
+
+    private EmbeddedDatabase replica;
+
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Queries queries;
+
+    @BeforeEach
+    void setUp() {
+        this.primary = database("primary");
+        this.replica = database("replica");
+
+        Map<Object, Object> targetDataSources = new HashMap<>();
+        targetDataSources.put(DataSourceType.PRIMARY, this.primary);
+        targetDataSources.put(DataSourceType.REPLICA, this.replica);
+        RoutingDataSource routingDataSource = new RoutingDataSource();
+        routingDataSource.setTargetDataSources(targetDataSources);
+        routingDataSource.setDefaultTargetDataSource(this.primary);
+        routingDataSource.afterPropertiesSet();
+
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(routingDataSource));
+        this.readYourWritesTracker = new ReadYourWritesTracker(60_000, 60_000);
+
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(new Queries(new JdbcTemplate(routingDataSource)));
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(new DataSourceRoutingAspect(this.readYourWritesTracker));
+        this.queries = proxyFactory.getProxy();
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        this.primary.shutdown();
+        this.replica.shutdown();
+    }
+
+    @Test
+    void readOnlyMethodReadsReplica() {
+        assertEquals("replica", this.queries.readFromReplica());
+        assertEquals("primary", this.queries.read());
+        assertNull(DataSourceContextHolder.get());
+    }
+
+    @Test
+    void writeTransactionStaysOnPrimary() {
+        String inWriteTransaction = this.transactionTemplate.execute(status -> this.queries.readFromReplica());
+        assertEquals("primary", inWriteTransaction);
+        // 不只是复用事务的连接，路由本身也选择主库
+        assertEquals(DataSourceType.PRIMARY, this.transactionTemplate.execute(status -> this.queries.routedTo()));
+
+        this.transactionTemplate.setReadOnly(true);
+        assertEquals(DataSourceType.REPLICA, this.transactionTemplate.execute(status -> this.queries.routedTo()));
+    }
+
+    @Test
+    void recentWriterReadsPrimary() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute("id", 1);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        assertEquals("replica", this.queries.readFromReplica());
+
+        this.readYourWritesTracker.markWrite(1);
+        assertEquals("primary", this.queries.readFromReplica());
+    }
+
+    @Test
+    void writeMarkerFollowsUserToAnotherInstance() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response));
+        this.readYourWritesTracker.markWrite(1);
+        Cookie cookie = response.getCookie(ReadYourWritesTracker.COOKIE_NAME);
+        assertNotNull(cookie);
+
+        // 下一个请求落到另一个实例，本地没有记录，从 cookie 得知刚写过
+        ReadYourWritesTracker otherInstance = new ReadYourWritesTracker(60_000, 60_000);
+        MockHttpServletRequest next = new MockHttpServletRequest();
+        next.setCookies(cookie);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(next));
+        assertTrue(otherInstance.recentlyWrote(1));
+        // 其他用户带着这个 cookie 不算
+        assertFalse(otherInstance.recentlyWrote(2));
+    }
+
+    @Test
+    void windowFollowsMeasuredReplicaLag() {
+        ReadYourWritesTracker tracker = new ReadYourWritesTracker(2_000, 60_000);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(ReadYourWritesTracker.COOKIE_NAME, "1." + (System.currentTimeMillis() - 3_000)));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        // 3 秒前写入，没有延迟时已经过了窗口
+        assertFalse(tracker.recentlyWrote(1));
+        tracker.onReplicaLag(5_000L);
+        assertEquals(7_000, tracker.getWindowMillis());
+        assertTrue(tracker.recentlyWrote(1));
+
+        // H2 不支持 SHOW SLAVE STATUS，延迟未知，按最大窗口
+        new ReplicaLagMonitor(this.replica, tracker).check();
+        assertEquals(60_000, tracker.getWindowMillis());
+    }
+
+    private static EmbeddedDatabase database(String name) {
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("create table marker (name varchar(16))");
+        jdbcTemplate.update("insert into marker (name) values (?)", name);
+        return database;
+    }
+
+    public static class Queries {
+
+        private final JdbcTemplate jdbcTemplate;
+
+        public Queries(JdbcTemplate jdbcTemplate) {
+            this.jdbcTemplate = jdbcTemplate;
+        }
+
+        @ReadFromReplica
+        public String readFromReplica() {
+            return this.read();
+        }
+
+        @ReadFromReplica
+        public DataSourceType routedTo() {
+            return DataSourceContextHolder.get();
+        }
+
+        public String read() {
+            return this.jdbcTemplate.queryForObject("select name from marker", String.class);
+        }
+    }
+
+}
@@ -0,0 +1,255 @@
+package com.itmuch.contentcenter.rocketmq;
+
+import com.itmuch.contentcenter.exception.MessagePublishBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.apache.rocketmq.client.producer.SendCallback;
+import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.client.producer.SendStatus;
+import org.apache.rocketmq.spring.core.RocketMQTemplate;
+import org.apache.rocketmq.spring.support.RocketMQHeaders;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.stream.config.BindingProperties;
+import org.springframework.cloud.stream.config.BindingServiceProperties;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 异步发送测试：broker 用延迟回调模拟，同步逐条发送和异步发送的吞吐量打印在日志中
+ */
+@Slf4j
+class AsyncMessagePublisherTests {
+
+    private final RocketMQTemplate rocketMQTemplate = mock(RocketMQTemplate.class);
+
+    private final BindingServiceProperties bindingServiceProperties = new BindingServiceProperties();
+
+    /**
+     * 模拟 broker：在 RTT 后回调
+     */
+    private final ScheduledExecutorService broker = Executors.newScheduledThreadPool(4);
+
+    private AsyncMessagePublisher asyncMessagePublisher;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        this.asyncMessagePublisher.destroy();
+        this.broker.shutdownNow();
+    }
+
+    @Test
+    void asyncSendIsNotLimitedByBrokerRoundTrip() throws Exception {
+        long rttMillis = 20;
+
+        // 没有绑定的 channel：逐条同步发送，每条等一个 RTT
+        this.asyncMessagePublisher = this.newPublisher(new AsyncPublisherProperties());
+        int syncTotal = 50;
+        MessageChannel slowChannel = (message, timeout) -> {
+            try {
+                Thread.sleep(rttMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        };
+        long start = System.nanoTime();
+        List<CompletableFuture<Boolean>> syncFutures = new ArrayList<>();
+        for (int i = 0; i < syncTotal; i++) {
+            syncFutures.add(this.asyncMessagePublisher.publish(slowChannel, MessageBuilder.withPayload(i).build()));
+        }
+        for (CompletableFuture<Boolean> future : syncFutures) {
+            assertTrue(future.get(10, TimeUnit.SECONDS));
+        }
+        long syncRate = syncTotal * 1_000_000_000L / (System.nanoTime() - start);
+
+        // 绑定的 channel：RocketMQTemplate#asyncSend，broker 在 RTT 后回调
+        int asyncTotal = 5000;
+        List<String> destinations = Collections.synchronizedList(new ArrayList<>());
+        List<Object> payloads = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            destinations.add(invocation.getArgument(0));
+            payloads.add(((Message<?>) invocation.getArgument(1)).getPayload());
+            SendCallback callback = invocation.getArgument(2);
+            SendResult sendResult = new SendResult();
+            sendResult.setSendStatus(SendStatus.SEND_OK);
+            this.broker.schedule(() -> callback.onSuccess(sendResult), rttMillis, TimeUnit.MILLISECONDS);
+            return null;
+        }).when(this.rocketMQTemplate).asyncSend(anyString(), any(Message.class), any(SendCallback.class), anyLong());
+        start = System.nanoTime();
+        List<CompletableFuture<Boolean>> asyncFutures = new ArrayList<>();
+        MessageChannel output = this.boundChannel("output", "stream-test-topic");
+        for (int i = 0; i < asyncTotal; i++) {
+            asyncFutures.add(this.asyncMessagePublisher.publish(output, MessageBuilder.withPayload(i).build()));
+        }
+        for (CompletableFuture<Boolean> future : asyncFutures) {
+            assertTrue(future.get(10, TimeUnit.SECONDS));
+        }
+        long asyncRate = asyncTotal * 1_000_000_000L / (System.nanoTime() - start);
+
+        log.info("RTT {}ms：同步逐条发送 {} 条/秒，异步发送 {} 条/秒", rttMillis, syncRate, asyncRate);
+        assertTrue(syncRate <= 1000 / rttMillis);
+        assertTrue(asyncRate > 10 * syncRate);
+        // 一个发送线程，按受理顺序发出
+        assertEquals(asyncTotal, payloads.size());
+        for (int i = 0; i < asyncTotal; i++) {
+            assertEquals(i, payloads.get(i));
+        }
+        assertTrue(destinations.stream().allMatch("stream-test-topic"::equals));
+    }
+
+    @Test
+    void asyncSendFailureCompletesOnlyThatMessage() throws Exception {
+        AsyncPublisherProperties properties = new AsyncPublisherProperties();
+        properties.setMaxInFlightPerDestination(1);
+        this.asyncMessagePublisher = this.newPublisher(properties);
+        doAnswer(invocation -> {
+            Message<?> message = invocation.getArgument(1);
+            SendCallback callback = invocation.getArgument(2);
+            if ("fail".equals(message.getPayload())) {
+                this.broker.execute(() -> callback.onException(new IllegalStateException("broker 不可用")));
+            } else {
+                SendResult sendResult = new SendResult();
+                sendResult.setSendStatus(SendStatus.SEND_OK);
+                this.broker.execute(() -> callback.onSuccess(sendResult));
+            }
+            return null;
+        }).when(this.rocketMQTemplate).asyncSend(anyString(), any(Message.class), any(SendCallback.class), anyLong());
+
+        MessageChannel output = this.boundChannel("my-tags-output", "stream-tags-test-topic");
+        CompletableFuture<Boolean> failed = this.asyncMessagePublisher.publish(output, MessageBuilder.withPayload("fail").build());
+        CompletableFuture<Boolean> tagged = this.asyncMessagePublisher.publish(output,
+                MessageBuilder.withPayload("ok").setHeader(RocketMQHeaders.TAGS, "tag1").build());
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        assertTrue(tagged.get(5, TimeUnit.SECONDS));
+        verify(this.rocketMQTemplate).asyncSend(eq("stream-tags-test-topic:tag1"), any(Message.class), any(SendCallback.class), anyLong());
+    }
+
+    @Test
+    void rejectsWhenBufferIsFullAndCompletesEachMessageSeparately() throws Exception {
+        AsyncPublisherProperties properties = new AsyncPublisherProperties();
+        properties.setCapacity(2);
+        properties.setBatchSize(1);
+        this.asyncMessagePublisher = this.newPublisher(properties);
+
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MessageChannel channel = (message, timeout) -> {
+            String payload = (String) message.getPayload();
+            if ("block".equals(payload)) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if ("fail".equals(payload)) {
+                throw new IllegalStateException("broker 不可用");
+            }
+            return true;
+        };
+
+        // 发送线程卡在第一条，后面两条占满缓冲区
+        CompletableFuture<Boolean> first = this.asyncMessagePublisher.publish(channel, MessageBuilder.withPayload("block").build());
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> failed = this.asyncMessagePublisher.publish(channel, MessageBuilder.withPayload("fail").build());
+        CompletableFuture<Boolean> last = this.asyncMessagePublisher.publish(channel, MessageBuilder.withPayload("ok").build());
+        assertThrows(MessagePublishBusyException.class,
+                () -> this.asyncMessagePublisher.publish(channel, MessageBuilder.withPayload("ok").build()));
+
+        release.countDown();
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        assertTrue(last.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void everyAcceptedMessageCompletesWhenShutdownRacesWithPublish() throws Exception {
+        this.asyncMessagePublisher = this.newPublisher(new AsyncPublisherProperties());
+        int threads = 8;
+        Queue<CompletableFuture<Boolean>> accepted = new ConcurrentLinkedQueue<>();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(threads);
+        MessageChannel[] channels = new MessageChannel[64];
+        for (int i = 0; i < channels.length; i++) {
+            // 捕获变量，每个 channel 是不同的实例
+            int index = i;
+            channels[i] = (message, timeout) -> index >= 0;
+        }
+
+        ExecutorService producers = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            producers.execute(() -> {
+                started.countDown();
+                // 不断用新的 channel，关闭时也在创建 Lane
+                for (int i = 0; i < 10_000; i++) {
+                    MessageChannel channel = channels[i % channels.length];
+                    try {
+                        accepted.add(this.asyncMessagePublisher.publish(channel, MessageBuilder.withPayload(i).build()));
+                    } catch (IllegalStateException e) {
+                        rejected.incrementAndGet();
+                    } catch (MessagePublishBusyException e) {
+                        // 缓冲区满，跳过
+                    }
+                }
+            });
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        this.asyncMessagePublisher.destroy();
+        producers.shutdown();
+        assertTrue(producers.awaitTermination(10, TimeUnit.SECONDS));
+
+        // 受理的消息都已完成，没有永远等待的 future
+        for (CompletableFuture<Boolean> future : accepted) {
+            assertTrue(future.isDone());
+        }
+        assertThrows(IllegalStateException.class,
+                () -> this.asyncMessagePublisher.publish((message, timeout) -> true, MessageBuilder.withPayload(0).build()));
+        log.info("关闭时受理 {} 条，拒绝 {} 条", accepted.size(), rejected.get());
+    }
+
+    private AsyncMessagePublisher newPublisher(AsyncPublisherProperties properties) {
+        return new AsyncMessagePublisher(properties, new SimpleMeterRegistry(), this.rocketMQTemplate, this.bindingServiceProperties);
+    }
+
+    private MessageChannel boundChannel(String name, String destination) {
+        BindingProperties binding = new BindingProperties();
+        binding.setDestination(destination);
+        this.bindingServiceProperties.getBindings().put(name, binding);
+        DirectChannel channel = new DirectChannel();
+        channel.setBeanName(name);
+        return channel;
+    }
+
+}
@@ -0,0 +1,215 @@
+package com.itmuch.contentcenter.rocketmq;
+
+import com.alibaba.fastjson.JSON;
+import com.itmuch.contentcenter.dao.messaging.OutboxMessageMapper;
+import com.itmuch.contentcenter.domain.dto.messaging.UserAddBonusMsgDTO;
+import com.itmuch.contentcenter.domain.entity.messaging.OutboxMessage;
+import com.itmuch.contentcenter.rocketmq.codec.BinaryMessageCodec;
+import com.itmuch.contentcenter.rocketmq.codec.JsonMessageCodec;
+import com.itmuch.contentcenter.rocketmq.codec.MessageCodecProperties;
+import com.itmuch.contentcenter.rocketmq.codec.MessageCodecs;
+import org.apache.rocketmq.spring.support.RocketMQHeaders;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 发件箱转发测试：outbox_message 用内存列表模拟，消息发送到内存中的 QueueChannel
+ */
+class OutboxRelayTests {
+
+    private final List<OutboxMessage> table = new ArrayList<>();
+
+    private final QueueChannel channel = new QueueChannel();
+
+    private final MessageCodecs messageCodecs = new MessageCodecs(
+            Arrays.asList(new JsonMessageCodec(), new BinaryMessageCodec()),
+            new MessageCodecProperties()
+    );
+
+    private final List<OutboxRelay> relays = new ArrayList<>();
+
+    private OutboxRelay outboxRelay;
+
+    @BeforeEach
+    void setUp() {
+        this.outboxRelay = this.newRelay();
+    }
+
+    private OutboxRelay newRelay() {
+        OutboxMessageMapper outboxMessageMapper = mock(OutboxMessageMapper.class);
+        when(outboxMessageMapper.claimUnsent(anyInt(), anyInt(), any(), any(), any(), anyInt())).thenAnswer(invocation -> {
+            int partition = invocation.getArgument(0);
+            int partitions = invocation.getArgument(1);
+            String owner = invocation.getArgument(2);
+            Date now = invocation.getArgument(3);
+            Date lockedUntil = invocation.getArgument(4);
+            int limit = invocation.getArgument(5);
+            synchronized (this.table) {
+                List<OutboxMessage> claimed = this.table.stream()
+                        .filter(message -> !message.getSent())
+                        .filter(message -> message.getLockedUntil() == null || message.getLockedUntil().before(now))
+                        .filter(message -> message.getId() % partitions == partition)
+                        .limit(limit)
+                        .collect(Collectors.toList());
+                claimed.forEach(message -> {
+                    message.setOwner(owner);
+                    message.setLockedUntil(lockedUntil);
+                });
+                return claimed.size();
+            }
+        });
+        when(outboxMessageMapper.selectClaimed(any())).thenAnswer(invocation -> {
+            String owner = invocation.getArgument(0);
+            synchronized (this.table) {
+                return this.table.stream()
+                        .filter(message -> !message.getSent())
+                        .filter(message -> owner.equals(message.getOwner()))
+                        .collect(Collectors.toList());
+            }
+        });
+        when(outboxMessageMapper.markSent(any(), any())).thenAnswer(invocation -> {
+            Collection<Integer> ids = invocation.getArgument(0);
+            synchronized (this.table) {
+                this.table.stream()
+                        .filter(message -> ids.contains(message.getId()))
+                        .forEach(message -> message.setSent(true));
+            }
+            return ids.size();
+        });
+
+        MyMqSource myMqSource = new MyMqSource() {
+            @Override
+            public MessageChannel output() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public MessageChannel outboxOutput() {
+                return channel;
+            }
+        };
+
+        OutboxProperties properties = new OutboxProperties();
+        properties.setRelayBatchSize(100);
+        properties.setRelayParallelism(2);
+        OutboxRelay relay = new OutboxRelay(outboxMessageMapper, myMqSource, properties, this.messageCodecs);
+        this.relays.add(relay);
+        return relay;
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.relays.forEach(OutboxRelay::destroy);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void relaysAllUnsentMessagesInBatches() {
+        this.insert(250);
+
+        assertEquals(250, this.outboxRelay.relay());
+
+        // 两个分区各 125 条，每个分区 100 + 25 两条消息
+        Set<Integer> userIds = new HashSet<>();
+        int messages = 0;
+        Message<?> message;
+        while ((message = this.channel.receive(0)) != null) {
+            messages++;
+            assertEquals("true", message.getHeaders().get("batch"));
+            List<UserAddBonusMsgDTO> payload = this.messageCodecs.decodePayloadList(
+                    (Message<byte[]>) message, UserAddBonusMsgDTO.class);
+            for (UserAddBonusMsgDTO dto : payload) {
+                userIds.add(dto.getUserId());
+                // 消费方按 outboxId 去重
+                assertEquals(dto.getUserId(), dto.getOutboxId());
+            }
+            assertEquals(
+                    payload.stream()
+                            .map(dto -> String.valueOf(dto.getOutboxId()))
+                            .collect(Collectors.joining(" ")),
+                    message.getHeaders().get(RocketMQHeaders.KEYS)
+            );
+        }
+        assertEquals(4, messages);
+        assertEquals(250, userIds.size());
+        assertTrue(this.table.stream().allMatch(OutboxMessage::getSent));
+
+        // 已发送的不会再发送
+        assertEquals(0, this.outboxRelay.relay());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void concurrentRelaysDoNotSendTheSameRow() throws Exception {
+        this.insert(2000);
+        OutboxRelay another = this.newRelay();
+
+        ExecutorService instances = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> first = instances.submit(this.outboxRelay::relay);
+            Future<Integer> second = instances.submit(another::relay);
+            assertEquals(2000, first.get() + second.get());
+        } finally {
+            instances.shutdownNow();
+        }
+
+        List<Integer> outboxIds = new ArrayList<>();
+        Message<?> message;
+        while ((message = this.channel.receive(0)) != null) {
+            this.messageCodecs.decodePayloadList((Message<byte[]>) message, UserAddBonusMsgDTO.class)
+                    .forEach(dto -> outboxIds.add(dto.getOutboxId()));
+        }
+        assertEquals(2000, outboxIds.size());
+        assertEquals(2000, new HashSet<>(outboxIds).size());
+    }
+
+    @Test
+    void expiredClaimIsTakenOver() {
+        this.insert(10);
+        // 另一个实例认领后宕机，认领已经过期
+        this.table.forEach(message -> {
+            message.setOwner("crashed");
+            message.setLockedUntil(new Date(System.currentTimeMillis() - 1));
+        });
+        this.table.get(0).setLockedUntil(new Date(System.currentTimeMillis() + 60_000));
+
+        assertEquals(9, this.outboxRelay.relay());
+        assertFalse(this.table.get(0).getSent());
+    }
+
+    private void insert(int count) {
+        for (int id = 1; id <= count; id++) {
+            this.table.add(OutboxMessage.builder()
+                    .id(id)
+                    .payload(JSON.toJSONString(UserAddBonusMsgDTO.builder().userId(id).bonus(50).build()))
+                    .sent(false)
+                    .createTime(new Date())
+                    .build());
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.itmuch.contentcenter.rocketmq;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.itmuch.contentcenter.dao.messaging.RocketmqTransactionLogMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.rocketmq.spring.core.RocketMQLocalTransactionState;
+import org.apache.rocketmq.spring.support.RocketMQHeaders;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransactionCheckBackServiceTests {
+
+    private RocketmqTransactionLogMapper rocketmqTransactionLogMapper;
+
+    private TransactionCheckBackService transactionCheckBackService;
+
+    @BeforeEach
+    void setUp() {
+        this.rocketmqTransactionLogMapper = mock(RocketmqTransactionLogMapper.class);
+        TransactionCheckBackProperties properties = new TransactionCheckBackProperties();
+        properties.setBloomExpectedInsertions(1000);
+        this.transactionCheckBackService = new TransactionCheckBackService(
+                this.rocketmqTransactionLogMapper, properties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void committedLocallyIsAnsweredWithoutQuery() {
+        this.transactionCheckBackService.begin("tx-1");
+        assertEquals(RocketMQLocalTransactionState.UNKNOWN,
+                this.transactionCheckBackService.check(headers("tx-1", 0L)));
+
+        this.transactionCheckBackService.end("tx-1", true);
+        assertEquals(RocketMQLocalTransactionState.COMMIT,
+                this.transactionCheckBackService.check(headers("tx-1", 0L)));
+
+        verify(this.rocketmqTransactionLogMapper, never()).selectExistsByTransactionId(anyString());
+    }
+
+    @Test
+    void recentUnknownIsNotRolledBack() {
+        when(this.rocketmqTransactionLogMapper.selectExistsByTransactionId("tx-2")).thenReturn(null);
+
+        assertEquals(RocketMQLocalTransactionState.UNKNOWN,
+                this.transactionCheckBackService.check(headers("tx-2", System.currentTimeMillis())));
+
+        verify(this.rocketmqTransactionLogMapper).selectExistsByTransactionId("tx-2");
+    }
+
+    @Test
+    void recentCommitOnAnotherInstanceIsFoundInDb() {
+        // 布隆过滤器没有命中，事务是其他实例提交的
+        when(this.rocketmqTransactionLogMapper.selectExistsByTransactionId("tx-5")).thenReturn(1);
+
+        assertEquals(RocketMQLocalTransactionState.COMMIT,
+                this.transactionCheckBackService.check(headers("tx-5", System.currentTimeMillis())));
+        // 查到过的事务id进入 LRU 和布隆过滤器，再次回查不查数据库
+        assertEquals(RocketMQLocalTransactionState.COMMIT,
+                this.transactionCheckBackService.check(headers("tx-5", System.currentTimeMillis())));
+
+        verify(this.rocketmqTransactionLogMapper, times(1)).selectExistsByTransactionId("tx-5");
+    }
+
+    @Test
+    void oldTransactionFallsBackToQuery() {
+        when(this.rocketmqTransactionLogMapper.selectExistsByTransactionId("tx-3")).thenReturn(1);
+        when(this.rocketmqTransactionLogMapper.selectExistsByTransactionId("tx-4")).thenReturn(null);
+
+        assertEquals(RocketMQLocalTransactionState.COMMIT,
+                this.transactionCheckBackService.check(headers("tx-3", 0L)));
+        assertEquals(RocketMQLocalTransactionState.ROLLBACK,
+                this.transactionCheckBackService.check(headers("tx-4", 0L)));
+    }
+
+    @Test
+    void bloomFalsePositiveIsNotCommitted() {
+        // 塞满的布隆过滤器对任何事务id都命中
+        BloomFilter<CharSequence> saturated = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), 1, 0.5);
+        for (int i = 0; i < 100; i++) {
+            saturated.put("committed-" + i);
+        }
+        ReflectionTestUtils.setField(this.transactionCheckBackService, "currentBloom", saturated);
+        when(this.rocketmqTransactionLogMapper.selectExistsByTransactionId("tx-6")).thenReturn(null);
+
+        assertEquals(RocketMQLocalTransactionState.ROLLBACK,
+                this.transactionCheckBackService.check(headers("tx-6", 0L)));
+        assertEquals(RocketMQLocalTransactionState.UNKNOWN,
+                this.transactionCheckBackService.check(headers("tx-6", System.currentTimeMillis())));
+        verify(this.rocketmqTransactionLogMapper, times(2)).selectExistsByTransactionId("tx-6");
+    }
+
+    private static MessageHeaders headers(String transactionId, Long bornTimestamp) {
+        Map<String, Object> headers = new HashMap<>();
+        headers.put(RocketMQHeaders.TRANSACTION_ID, transactionId);
+        headers.put(RocketMQHeaders.PREFIX + RocketMQHeaders.BORN_TIMESTAMP, bornTimestamp);
+        return new MessageHeaders(headers);
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.itmuch.contentcenter.rocketmq.codec;
+
+import com.itmuch.contentcenter.domain.dto.messaging.UserAddBonusMsgDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * JSON 编码和二进制编码的编解码耗时对比
+ *  运行 main 方法，或者 mvn test-compile 后用 org.openjdk.jmh.Main 运行
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageCodecBenchmark {
+
+    /**
+     * 批量审核一批的分享数
+     */
+    @Param({"1", "100", "1000"})
+    private int size;
+
+    private final JsonMessageCodec json = new JsonMessageCodec();
+
+    private final BinaryMessageCodec binary = new BinaryMessageCodec();
+
+    private List<UserAddBonusMsgDTO> bonuses;
+
+    private byte[] jsonBytes;
+
+    private byte[] binaryBytes;
+
+    @Setup
+    public void setUp() {
+        this.bonuses = IntStream.rangeClosed(1, this.size)
+                .mapToObj(userId -> UserAddBonusMsgDTO.builder().userId(userId).bonus(50).build())
+                .collect(Collectors.toList());
+        this.jsonBytes = this.json.encode(this.bonuses);
+        this.binaryBytes = this.binary.encode(this.bonuses);
+    }
+
+    @Benchmark
+    public byte[] jsonEncode() {
+        return this.json.encode(this.bonuses);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return this.binary.encode(this.bonuses);
+    }
+
+    @Benchmark
+    public List<UserAddBonusMsgDTO> jsonDecode() {
+        return this.json.decodeList(this.jsonBytes, UserAddBonusMsgDTO.class);
+    }
+
+    @Benchmark
+    public List<UserAddBonusMsgDTO> binaryDecode() {
+        return this.binary.decodeList(this.binaryBytes, UserAddBonusMsgDTO.class);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MessageCodecBenchmark.class.getSimpleName())
+                .build()
+        ).run();
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.itmuch.contentcenter.rocketmq.codec;
+
+import com.itmuch.contentcenter.domain.dto.content.ShareAuditDTO;
+import com.itmuch.contentcenter.domain.dto.content.ShareBatchAuditDTO;
+import com.itmuch.contentcenter.domain.dto.messaging.UserAddBonusMsgDTO;
+import com.itmuch.contentcenter.domain.enums.AuditStatusEnum;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 消息编码测试：二进制编码和 JSON 编码结果一致，字节数更少
+ */
+class MessageCodecTests {
+
+    private final JsonMessageCodec json = new JsonMessageCodec();
+
+    private final BinaryMessageCodec binary = new BinaryMessageCodec();
+
+    @Test
+    void binaryRoundTripsAndIsSmallerThanJson() {
+        ShareAuditDTO audit = new ShareAuditDTO();
+        audit.setAuditStatusEnum(AuditStatusEnum.PASS);
+        audit.setReason("内容不错，审核通过");
+        assertRoundTrip(audit, ShareAuditDTO.class);
+
+        ShareBatchAuditDTO batchAudit = new ShareBatchAuditDTO();
+        batchAudit.setIds(IntStream.rangeClosed(1, 1000).boxed().collect(Collectors.toList()));
+        batchAudit.setAuditStatusEnum(AuditStatusEnum.REJECT);
+        assertRoundTrip(batchAudit, ShareBatchAuditDTO.class);
+
+        List<UserAddBonusMsgDTO> bonuses = IntStream.rangeClosed(1, 1000)
+                .mapToObj(userId -> UserAddBonusMsgDTO.builder().userId(userId).bonus(50).build())
+                .collect(Collectors.toList());
+        byte[] binaryBytes = this.binary.encode(bonuses);
+        byte[] jsonBytes = this.json.encode(bonuses);
+        assertEquals(bonuses, this.binary.decodeList(binaryBytes, UserAddBonusMsgDTO.class));
+        assertEquals(bonuses, this.json.decodeList(jsonBytes, UserAddBonusMsgDTO.class));
+        assertTrue(binaryBytes.length * 4 < jsonBytes.length,
+                "binary " + binaryBytes.length + " bytes, json " + jsonBytes.length + " bytes");
+
+        // 负数和 null 字段
+        UserAddBonusMsgDTO refund = UserAddBonusMsgDTO.builder().userId(Integer.MIN_VALUE).bonus(-50).build();
+        assertEquals(refund, this.binary.decode(this.binary.encode(refund), UserAddBonusMsgDTO.class));
+        assertEquals(new UserAddBonusMsgDTO(), this.binary.decode(this.binary.encode(new UserAddBonusMsgDTO()), UserAddBonusMsgDTO.class));
+    }
+
+    @Test
+    void skipsFieldsAppendedByNewerWriters() {
+        byte[] current = this.binary.encode(UserAddBonusMsgDTO.builder().userId(7).bonus(50).build());
+        // 版本(1) + 类型(1) + 是否列表(1) + 记录长度(1) + userId(1) + bonus(1) + outboxId(1)，在记录末尾追加一个未知字段
+        byte[] newer = Arrays.copyOf(current, current.length + 1);
+        newer[3] = (byte) (current[3] + 1);
+        newer[current.length] = 42;
+
+        UserAddBonusMsgDTO decoded = this.binary.decode(newer, UserAddBonusMsgDTO.class);
+        assertEquals(Integer.valueOf(7), decoded.getUserId());
+        assertEquals(Integer.valueOf(50), decoded.getBonus());
+
+        // 旧版本的记录缺少末尾字段
+        byte[] older = Arrays.copyOf(current, current.length - 2);
+        older[3] = (byte) (current[3] - 2);
+        UserAddBonusMsgDTO decodedOlder = this.binary.decode(older, UserAddBonusMsgDTO.class);
+        assertEquals(Integer.valueOf(7), decodedOlder.getUserId());
+        assertNull(decodedOlder.getBonus());
+        assertNull(decodedOlder.getOutboxId());
+
+        // 更高版本的消息读已知字段，跳过追加的字段
+        byte[] newerVersion = newer.clone();
+        newerVersion[0] = BinaryMessageCodec.VERSION + 1;
+        assertEquals(Integer.valueOf(50), this.binary.decode(newerVersion, UserAddBonusMsgDTO.class).getBonus());
+
+        byte[] invalidVersion = current.clone();
+        invalidVersion[0] = 0;
+        assertThrows(IllegalArgumentException.class,
+                () -> this.binary.decode(invalidVersion, UserAddBonusMsgDTO.class));
+        assertThrows(IllegalArgumentException.class,
+                () -> this.binary.decode(current, ShareAuditDTO.class));
+    }
+
+    @Test
+    void decodesByCodecHeader() {
+        MessageCodecProperties properties = new MessageCodecProperties();
+        properties.setType(BinaryMessageCodec.NAME);
+        MessageCodecs messageCodecs = new MessageCodecs(Arrays.asList(this.json, this.binary), properties);
+
+        ShareAuditDTO audit = new ShareAuditDTO();
+        audit.setAuditStatusEnum(AuditStatusEnum.PASS);
+        Message<byte[]> message = messageCodecs
+                .withPayload(UserAddBonusMsgDTO.builder().userId(1).bonus(50).build())
+                .setHeader(MessageCodecs.TRANSACTIONAL_ARG_HEADER, messageCodecs.encodeHeader(audit))
+                .build();
+
+        assertEquals(BinaryMessageCodec.NAME, message.getHeaders().get(MessageCodecs.CODEC_HEADER));
+        // 事务监听器拿到的 arg 是编码后的字符串，或者没有 arg
+        Object arg = message.getHeaders().get(MessageCodecs.TRANSACTIONAL_ARG_HEADER);
+        assertEquals(audit, messageCodecs.decodeArg(arg, message.getHeaders(), ShareAuditDTO.class));
+        assertEquals(audit, messageCodecs.decodeArg(null, message.getHeaders(), ShareAuditDTO.class));
+        assertEquals(Integer.valueOf(1), messageCodecs.decodePayload(message, UserAddBonusMsgDTO.class).getUserId());
+
+        // 没有 codec 消息头的旧消息按 JSON 解码
+        assertEquals(audit, messageCodecs.get(null).decodeFromString(this.json.encodeToString(audit), ShareAuditDTO.class));
+    }
+
+    private <T> void assertRoundTrip(T value, Class<T> type) {
+        byte[] binaryBytes = this.binary.encode(value);
+        byte[] jsonBytes = this.json.encode(value);
+        assertEquals(value, this.binary.decode(binaryBytes, type));
+        assertEquals(value, this.json.decode(jsonBytes, type));
+        assertTrue(binaryBytes.length < jsonBytes.length,
+                type.getSimpleName() + " binary " + binaryBytes.length + " bytes, json " + jsonBytes.length + " bytes");
+    }
+
+}
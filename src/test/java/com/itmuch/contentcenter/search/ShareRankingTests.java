@@ -0,0 +1,85 @@
+package com.itmuch.contentcenter.search;
+
+import com.itmuch.contentcenter.dao.content.ShareMapper;
+import com.itmuch.contentcenter.domain.dto.content.ShareListItemDTO;
+import com.itmuch.contentcenter.domain.entity.content.Share;
+import com.itmuch.contentcenter.domain.enums.AuditStatusEnum;
+import com.itmuch.contentcenter.domain.enums.ShareRankingTypeEnum;
+import com.itmuch.contentcenter.service.content.ShareBuyCountWriter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 排行榜测试：榜外分享的兑换只在排行榜没满时查库
+ */
+class ShareRankingTests {
+
+    @Mock
+    private ShareMapper shareMapper;
+
+    @Mock
+    private ShareBuyCountWriter shareBuyCountWriter;
+
+    private ShareRanking shareRanking;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        ShareRankingProperties properties = new ShareRankingProperties();
+        properties.setCapacity(2);
+        this.shareRanking = new ShareRanking(this.shareMapper, this.shareBuyCountWriter, properties);
+    }
+
+    @Test
+    void exchangeOfShareOffFullBoardDoesNotQuery() {
+        when(this.shareMapper.selectTopPass(anyBoolean(), anyInt()))
+                .thenReturn(Arrays.asList(share(1, 10), share(2, 5)));
+        this.shareRanking.rebuild();
+
+        this.shareRanking.onExchanged(3);
+        this.shareRanking.onExchanged(2);
+
+        verify(this.shareMapper, never()).selectByPrimaryKey(3);
+        assertEquals(Arrays.asList(1, 2), ids(this.shareRanking.top(ShareRankingTypeEnum.MOST_BOUGHT, 2)));
+        assertEquals(6, (int) this.shareRanking.top(ShareRankingTypeEnum.MOST_BOUGHT, 2).get(1).getBuyCount());
+    }
+
+    @Test
+    void exchangeOfShareOffBoardWithRoomIsLoaded() {
+        when(this.shareMapper.selectTopPass(anyBoolean(), anyInt()))
+                .thenReturn(Collections.singletonList(share(1, 10)));
+        this.shareRanking.rebuild();
+        when(this.shareMapper.selectByPrimaryKey(3)).thenReturn(share(3, 1));
+
+        this.shareRanking.onExchanged(3);
+
+        assertEquals(Arrays.asList(1, 3), ids(this.shareRanking.top(ShareRankingTypeEnum.MOST_BOUGHT, 2)));
+    }
+
+    private static Share share(int id, int buyCount) {
+        return Share.builder()
+                .id(id)
+                .buyCount(buyCount)
+                .auditStatus(AuditStatusEnum.PASS.toString())
+                .build();
+    }
+
+    private static List<Integer> ids(List<ShareListItemDTO> items) {
+        return items.stream().map(ShareListItemDTO::getId).collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.itmuch.contentcenter.search;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 标题索引查询和逐条 contains(相当于内存中的 title like '%关键词%')的耗时对比
+ *  标题数 10 万和 100 万，关键词分别是常见的两个字和较长的罕见短语
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class ShareTitleIndexBenchmark {
+
+    private static final String[] WORDS = {
+            "spring", "cloud", "boot", "java", "微服务", "入门", "实战", "教程", "源码", "分析",
+            "架构", "设计", "redis", "mysql", "缓存", "消息", "队列", "分布式", "事务", "高并发"
+    };
+
+    @Param({"100000", "1000000"})
+    private int titleCount;
+
+    @Param({"实战", "分布式事务源码"})
+    private String keyword;
+
+    private ShareTitleIndex index;
+
+    private List<String> titles;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        this.index = new ShareTitleIndex(null, new ShareTitleIndexProperties());
+        this.titles = new ArrayList<>(this.titleCount);
+        for (int id = 1; id <= this.titleCount; id++) {
+            StringBuilder title = new StringBuilder();
+            int words = 3 + random.nextInt(4);
+            for (int i = 0; i < words; i++) {
+                title.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            this.index.add(id, title.toString());
+            this.titles.add(ShareTitleIndex.normalize(title.toString()));
+        }
+    }
+
+    @Benchmark
+    public List<Integer> index() {
+        return this.index.search(this.keyword);
+    }
+
+    @Benchmark
+    public List<Integer> scan() {
+        String normalizedKeyword = ShareTitleIndex.normalize(this.keyword);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < this.titles.size(); i++) {
+            if (this.titles.get(i).contains(normalizedKeyword)) {
+                ids.add(i + 1);
+            }
+        }
+        return ids;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ShareTitleIndexBenchmark.class.getSimpleName())
+                .build()
+        ).run();
+    }
+
+}
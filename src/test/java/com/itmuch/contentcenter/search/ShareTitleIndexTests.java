@@ -0,0 +1,114 @@
+package com.itmuch.contentcenter.search;
+
+import com.itmuch.contentcenter.dao.content.ShareMapper;
+import com.itmuch.contentcenter.domain.entity.content.Share;
+import com.itmuch.contentcenter.domain.enums.AuditStatusEnum;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 标题索引测试：构建失败、增删、追赶其他实例的审核、和 LIKE 一致的匹配规则
+ */
+class ShareTitleIndexTests {
+
+    @Mock
+    private ShareMapper shareMapper;
+
+    private ShareTitleIndex shareTitleIndex;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        this.shareTitleIndex = new ShareTitleIndex(this.shareMapper, new ShareTitleIndexProperties());
+    }
+
+    @Test
+    void buildFailureLeavesIndexNotReady() {
+        doThrow(new IllegalStateException("连接断开")).when(this.shareMapper).scanPassTitles(any());
+
+        this.shareTitleIndex.build();
+
+        assertFalse(this.shareTitleIndex.isReady());
+        assertEquals(0, this.shareTitleIndex.size());
+    }
+
+    @Test
+    void rejectedAndDeletedSharesAreRemoved() {
+        this.shareTitleIndex.add(1, "Spring Cloud 微服务");
+        this.shareTitleIndex.add(2, "Spring Boot 入门");
+        assertEquals(Arrays.asList(1, 2), this.shareTitleIndex.search("spring"));
+
+        this.shareTitleIndex.onAuditStatusChanged(1, AuditStatusEnum.REJECT);
+        assertEquals(Collections.singletonList(2), this.shareTitleIndex.search("SPRING"));
+        assertEquals(Collections.emptyList(), this.shareTitleIndex.search("微服务"));
+
+        // 审核通过时分享已经不存在
+        when(this.shareMapper.selectByPrimaryKey(2)).thenReturn(null);
+        this.shareTitleIndex.onAuditStatusChanged(2, AuditStatusEnum.PASS);
+        assertEquals(Collections.emptyList(), this.shareTitleIndex.search("spring"));
+        assertEquals(0, this.shareTitleIndex.size());
+    }
+
+    @Test
+    void catchUpAppliesAuditsFromOtherInstances() {
+        this.shareTitleIndex.build();
+        this.shareTitleIndex.add(1, "Spring Cloud 微服务");
+        assertTrue(this.shareTitleIndex.isReady());
+
+        // 其他实例审核：1 不通过，2 通过
+        when(this.shareMapper.selectTitlesUpdatedSince(any())).thenReturn(Arrays.asList(
+                Share.builder().id(1).title("Spring Cloud 微服务").auditStatus(AuditStatusEnum.REJECT.toString()).build(),
+                Share.builder().id(2).title("Spring Boot 入门").auditStatus(AuditStatusEnum.PASS.toString()).build()));
+        Date before = new Date();
+        this.shareTitleIndex.catchUp();
+
+        assertEquals(Collections.singletonList(2), this.shareTitleIndex.search("spring"));
+        // 从上次构建往前多查一个周期
+        ArgumentCaptor<Date> updatedAfter = ArgumentCaptor.forClass(Date.class);
+        verify(this.shareMapper).selectTitlesUpdatedSince(updatedAfter.capture());
+        assertTrue(updatedAfter.getValue().getTime() <= before.getTime() - 30_000);
+    }
+
+    @Test
+    void catchUpRetriesFailedBuild() {
+        doThrow(new IllegalStateException("连接断开")).when(this.shareMapper).scanPassTitles(any());
+        this.shareTitleIndex.build();
+        assertFalse(this.shareTitleIndex.isReady());
+
+        doNothing().when(this.shareMapper).scanPassTitles(any());
+        this.shareTitleIndex.catchUp();
+
+        assertTrue(this.shareTitleIndex.isReady());
+        verify(this.shareMapper, never()).selectTitlesUpdatedSince(any());
+    }
+
+    @Test
+    void wildcardsMatchLiterally() {
+        when(this.shareMapper.selectByPrimaryKey(3)).thenReturn(
+                Share.builder().id(3).title("限时 50%_OFF").build());
+        this.shareTitleIndex.onAuditStatusChanged(3, AuditStatusEnum.PASS);
+        this.shareTitleIndex.add(4, "限时 50 折");
+
+        assertEquals(Collections.singletonList(3), this.shareTitleIndex.search(" 50%_off "));
+        assertEquals(Collections.emptyList(), this.shareTitleIndex.search("50_"));
+        assertTrue(this.shareTitleIndex.search("%").contains(3));
+    }
+
+}
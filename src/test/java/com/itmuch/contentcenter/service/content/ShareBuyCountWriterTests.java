@@ -0,0 +1,81 @@
+package com.itmuch.contentcenter.service.content;
+
+import com.itmuch.contentcenter.dao.content.ShareMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 兑换数合并写入测试：写入完的分享从内存中删除，并发累加不丢失
+ */
+class ShareBuyCountWriterTests {
+
+    private final Map<Integer, AtomicLong> written = new ConcurrentHashMap<>();
+
+    private final ShareBuyCountWriter writer = new ShareBuyCountWriter(this.shareMapper(), new ShareExchangeProperties());
+
+    @Test
+    void flushedSharesAreRemoved() {
+        this.writer.increment(1);
+        this.writer.increment(1);
+        this.writer.increment(2);
+
+        this.writer.flush();
+
+        assertTrue(this.writer.pendingDeltas().isEmpty());
+        assertEquals(0, this.writer.pendingDelta(1));
+        assertEquals(2, this.written.get(1).get());
+        assertEquals(1, this.written.get(2).get());
+    }
+
+    @Test
+    void concurrentIncrementsAreNotLost() throws InterruptedException {
+        int threads = 4;
+        int perThread = 20000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    this.writer.increment(i % 10);
+                }
+                done.countDown();
+            });
+        }
+        // 累加的同时反复写入，key 会被删除又重新加入
+        while (done.getCount() > 0) {
+            this.writer.flush();
+        }
+        this.writer.flush();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertTrue(this.writer.pendingDeltas().isEmpty());
+        long total = this.written.values().stream().mapToLong(AtomicLong::get).sum();
+        assertEquals((long) threads * perThread, total);
+    }
+
+    private ShareMapper shareMapper() {
+        ShareMapper shareMapper = mock(ShareMapper.class);
+        doAnswer(invocation -> {
+            Map<Integer, Long> deltas = invocation.getArgument(0);
+            deltas.forEach((shareId, delta) ->
+                    this.written.computeIfAbsent(shareId, id -> new AtomicLong()).addAndGet(delta));
+            return deltas.size();
+        }).when(shareMapper).incrementBuyCounts(anyMap());
+        return shareMapper;
+    }
+
+}
@@ -0,0 +1,163 @@
+package com.itmuch.contentcenter.service.content;
+
+import com.itmuch.contentcenter.cache.PurchasedShareCache;
+import com.itmuch.contentcenter.dao.content.MidUserShareMapper;
+import com.itmuch.contentcenter.dao.content.ShareExchangeMapper;
+import com.itmuch.contentcenter.dao.content.ShareMapper;
+import com.itmuch.contentcenter.datasource.ReadYourWritesTracker;
+import com.itmuch.contentcenter.domain.entity.content.ShareExchange;
+import com.itmuch.contentcenter.domain.enums.ShareExchangeStatusEnum;
+import com.itmuch.contentcenter.feignclient.UserCenterFeignClient;
+import com.itmuch.contentcenter.search.ShareRanking;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.when;
+
+/**
+ * 异步兑换租约测试：share_exchange 用内存列表模拟，只接管租约已到期的 PENDING 兑换
+ */
+class ShareExchangePipelineTests {
+
+    private static final String OTHER_INSTANCE = "other-instance";
+
+    @Mock
+    private ShareMapper shareMapper;
+
+    @Mock
+    private MidUserShareMapper midUserShareMapper;
+
+    @Mock
+    private ShareExchangeMapper shareExchangeMapper;
+
+    @Mock
+    private UserCenterFeignClient userCenterFeignClient;
+
+    @Mock
+    private PurchasedShareCache purchasedShareCache;
+
+    @Mock
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    @Mock
+    private ShareBuyCountWriter shareBuyCountWriter;
+
+    @Mock
+    private ShareRanking shareRanking;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private final List<ShareExchange> table = new ArrayList<>();
+
+    private ShareExchangePipeline shareExchangePipeline;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(this.shareExchangeMapper.claimExpired(any(), any(), any(), anyInt())).thenAnswer(invocation -> {
+            String owner = invocation.getArgument(0);
+            Date now = invocation.getArgument(1);
+            Date lockedUntil = invocation.getArgument(2);
+            int limit = invocation.getArgument(3);
+            List<ShareExchange> claimed = this.table.stream()
+                    .filter(shareExchange -> ShareExchangeStatusEnum.PENDING.toString().equals(shareExchange.getStatus()))
+                    .filter(shareExchange -> shareExchange.getLockedUntil() == null || shareExchange.getLockedUntil().before(now))
+                    .limit(limit)
+                    .collect(Collectors.toList());
+            claimed.forEach(shareExchange -> {
+                shareExchange.setOwner(owner);
+                shareExchange.setLockedUntil(lockedUntil);
+            });
+            return claimed.size();
+        });
+        when(this.shareExchangeMapper.selectPendingByOwner(any())).thenAnswer(invocation -> {
+            String owner = invocation.getArgument(0);
+            return this.table.stream()
+                    .filter(shareExchange -> ShareExchangeStatusEnum.PENDING.toString().equals(shareExchange.getStatus()))
+                    .filter(shareExchange -> owner.equals(shareExchange.getOwner()))
+                    .collect(Collectors.toList());
+        });
+        when(this.shareExchangeMapper.renewLease(any(), any(), any())).thenAnswer(invocation -> {
+            Collection<Integer> ids = invocation.getArgument(0);
+            String owner = invocation.getArgument(1);
+            Date lockedUntil = invocation.getArgument(2);
+            List<ShareExchange> renewed = this.table.stream()
+                    .filter(shareExchange -> ids.contains(shareExchange.getId()))
+                    .filter(shareExchange -> owner.equals(shareExchange.getOwner()))
+                    .collect(Collectors.toList());
+            renewed.forEach(shareExchange -> shareExchange.setLockedUntil(lockedUntil));
+            return renewed.size();
+        });
+
+        // 不调用 start()，接管的兑换只排队不处理
+        this.shareExchangePipeline = new ShareExchangePipeline(
+                this.shareMapper, this.midUserShareMapper, this.shareExchangeMapper, this.userCenterFeignClient,
+                this.purchasedShareCache, this.readYourWritesTracker, this.shareBuyCountWriter, this.shareRanking,
+                this.transactionTemplate, new ShareExchangeProperties(), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        this.shareExchangePipeline.destroy();
+    }
+
+    @Test
+    void onlyExpiredLeasesAreTakenOver() {
+        long now = System.currentTimeMillis();
+        // 1 : 其他实例正在处理 ; 2 : 其他实例宕机，租约已到期 ; 3 : 没有租约的旧记录 ; 4 : 已处理完
+        this.table.add(exchange(1, ShareExchangeStatusEnum.PENDING, new Date(now + 60_000)));
+        this.table.add(exchange(2, ShareExchangeStatusEnum.PENDING, new Date(now - 1)));
+        this.table.add(exchange(3, ShareExchangeStatusEnum.PENDING, null));
+        this.table.add(exchange(4, ShareExchangeStatusEnum.SUCCESS, new Date(now - 1)));
+
+        assertEquals(2, this.shareExchangePipeline.takeOverExpired());
+        assertEquals(OTHER_INSTANCE, this.table.get(0).getOwner());
+        assertEquals(OTHER_INSTANCE, this.table.get(3).getOwner());
+        String owner = this.table.get(1).getOwner();
+        assertNotEquals(OTHER_INSTANCE, owner);
+        assertEquals(owner, this.table.get(2).getOwner());
+
+        // 已经在排队的不会重复排队
+        this.table.get(1).setLockedUntil(new Date(now - 1));
+        assertEquals(0, this.shareExchangePipeline.takeOverExpired());
+
+        // 只续约本实例排队中的
+        Date before = this.table.get(0).getLockedUntil();
+        this.shareExchangePipeline.maintainLeases();
+        assertEquals(before, this.table.get(0).getLockedUntil());
+        for (ShareExchange shareExchange : Arrays.asList(this.table.get(1), this.table.get(2))) {
+            assertTrue(shareExchange.getLockedUntil().after(new Date(now)));
+        }
+    }
+
+    private static ShareExchange exchange(int id, ShareExchangeStatusEnum status, Date lockedUntil) {
+        return ShareExchange.builder()
+                .id(id)
+                .userId(id)
+                .shareId(10)
+                .price(20)
+                .status(status.toString())
+                .owner(OTHER_INSTANCE)
+                .lockedUntil(lockedUntil)
+                .build();
+    }
+
+}
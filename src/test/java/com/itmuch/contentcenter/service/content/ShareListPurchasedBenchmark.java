@@ -0,0 +1,153 @@
+package com.itmuch.contentcenter.service.content;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 分页列表一页的已兑换判断 + downloadUrl 查询耗时：逐条查询(N+1)和集合查询的对比
+ *  数据在 H2 内存库中，SQL 和 MidUserShareMapper / ShareMapper 一致；
+ *  rttMicros 模拟每条语句的网络往返，内存库本身没有这部分开销
+ *  运行 main 方法，或者 mvn test-compile 后用 org.openjdk.jmh.Main 运行
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShareListPurchasedBenchmark {
+
+    private static final int USER_ID = 1;
+
+    private static final int SHARE_COUNT = 10000;
+
+    @Param({"10", "50", "100"})
+    private int pageSize;
+
+    @Param({"0", "500"})
+    private long rttMicros;
+
+    private EmbeddedDatabase database;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private List<Integer> pageIds;
+
+    @Setup
+    public void setUp() {
+        this.database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        this.jdbcTemplate = new JdbcTemplate(this.database);
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(this.database);
+        this.jdbcTemplate.execute("create table share (id int primary key, download_url varchar(255))");
+        this.jdbcTemplate.execute("create table mid_user_share (id int auto_increment primary key, share_id int, user_id int)");
+        this.jdbcTemplate.execute("create index idx_user_id_share_id on mid_user_share (user_id, share_id)");
+        List<Object[]> shares = new ArrayList<>(SHARE_COUNT);
+        List<Object[]> purchases = new ArrayList<>();
+        for (int id = 1; id <= SHARE_COUNT; id++) {
+            shares.add(new Object[]{id, "url-" + id});
+            // 用户兑换了三分之一的分享
+            if (id % 3 == 0) {
+                purchases.add(new Object[]{id, USER_ID});
+            }
+        }
+        this.jdbcTemplate.batchUpdate("insert into share (id, download_url) values (?, ?)", shares);
+        this.jdbcTemplate.batchUpdate("insert into mid_user_share (share_id, user_id) values (?, ?)", purchases);
+        this.pageIds = IntStream.rangeClosed(1, this.pageSize).boxed().collect(Collectors.toList());
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.database.shutdown();
+    }
+
+    /**
+     * 原来的做法：每个分享一条 mid_user_share 查询(selectOne)
+     */
+    @Benchmark
+    public Map<Integer, String> perItem() {
+        Map<Integer, String> downloadUrls = new HashMap<>();
+        for (Integer shareId : this.pageIds) {
+            this.roundTrip();
+            List<Integer> found = this.jdbcTemplate.queryForList(
+                    "select id from mid_user_share where user_id = ? and share_id = ?",
+                    Integer.class, USER_ID, shareId);
+            if (!found.isEmpty()) {
+                this.roundTrip();
+                downloadUrls.put(shareId, this.jdbcTemplate.queryForObject(
+                        "select download_url from share where id = ?", String.class, shareId));
+            }
+        }
+        return downloadUrls;
+    }
+
+    /**
+     * 现在的做法：selectPurchasedShareIds + selectDownloadUrlsByIds，一页两条查询
+     */
+    @Benchmark
+    public Map<Integer, String> setBased() {
+        this.roundTrip();
+        List<Integer> purchased = this.namedParameterJdbcTemplate.queryForList(
+                "select share_id from mid_user_share where user_id = :userId and share_id in (:shareIds)",
+                new MapSqlParameterSource("userId", USER_ID).addValue("shareIds", this.pageIds),
+                Integer.class);
+        Map<Integer, String> downloadUrls = new HashMap<>();
+        if (purchased.isEmpty()) {
+            return downloadUrls;
+        }
+        this.roundTrip();
+        this.namedParameterJdbcTemplate.query(
+                "select id, download_url from share where id in (:ids)",
+                new MapSqlParameterSource("ids", purchased),
+                resultSet -> {
+                    downloadUrls.put(resultSet.getInt("id"), resultSet.getString("download_url"));
+                });
+        return downloadUrls;
+    }
+
+    private void roundTrip() {
+        if (this.rttMicros > 0) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(this.rttMicros));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ShareListPurchasedBenchmark.class.getSimpleName())
+                .build()
+        ).run();
+    }
+
+}
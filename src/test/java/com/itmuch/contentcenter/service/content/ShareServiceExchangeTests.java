@@ -0,0 +1,336 @@
+package com.itmuch.contentcenter.service.content;
+
+import com.itmuch.contentcenter.cache.PurchasedShareCache;
+import com.itmuch.contentcenter.dao.content.MidUserShareMapper;
+import com.itmuch.contentcenter.dao.content.ShareMapper;
+import com.itmuch.contentcenter.datasource.ReadYourWritesTracker;
+import com.itmuch.contentcenter.domain.dto.user.UserAddBonusItemDTO;
+import com.itmuch.contentcenter.domain.dto.user.UserAddBonusResultDTO;
+import com.itmuch.contentcenter.domain.entity.content.MidUserShare;
+import com.itmuch.contentcenter.domain.entity.content.Share;
+import com.itmuch.contentcenter.feignclient.UserCenterFeignClient;
+import com.itmuch.contentcenter.search.ShareRanking;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 积分兑换并发测试：多个线程同时兑换同一个(用户, 分享)，只能扣一次积分
+ *  mid_user_share 的唯一索引用 Set 模拟，在事务中插入的占位随事务回滚删除；
+ *  用户中心按 requestId 去重、积分不够不扣减、撤销只退回生效过的扣减
+ */
+class ShareServiceExchangeTests {
+
+    private static final int USER_ID = 1;
+
+    private static final int SHARE_ID = 10;
+
+    private static final int PRICE = 20;
+
+    @Mock
+    private ShareMapper shareMapper;
+
+    @Mock
+    private MidUserShareMapper midUserShareMapper;
+
+    @Mock
+    private UserCenterFeignClient userCenterFeignClient;
+
+    @Mock
+    private PurchasedShareCache purchasedShareCache;
+
+    @Mock
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    @Mock
+    private ShareBuyCountWriter shareBuyCountWriter;
+
+    @Mock
+    private ShareRanking shareRanking;
+
+    @Spy
+    private ShareExchangeProperties shareExchangeProperties = new ShareExchangeProperties();
+
+    @InjectMocks
+    private ShareService shareService;
+
+    private ShareExchangeIdempotency shareExchangeIdempotency;
+
+    private final Set<String> midUserShares = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger bonus = new AtomicInteger();
+
+    private final AtomicInteger addBonusCalls = new AtomicInteger();
+
+    private final AtomicInteger minBonus = new AtomicInteger(Integer.MAX_VALUE);
+
+    private final AtomicInteger lostResponses = new AtomicInteger();
+
+    private final Map<String, UserAddBonusResultDTO> bonusResults = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        when(this.shareMapper.selectByPrimaryKey(SHARE_ID)).thenReturn(
+                Share.builder().id(SHARE_ID).price(PRICE).build()
+        );
+
+        when(this.midUserShareMapper.insert(any(MidUserShare.class))).thenAnswer(invocation -> {
+            MidUserShare midUserShare = invocation.getArgument(0);
+            String key = midUserShare.getUserId() + ":" + midUserShare.getShareId();
+            if (!this.midUserShares.add(key)) {
+                throw new DuplicateKeyException("uk_user_id_share_id");
+            }
+            // 和数据库一样，事务回滚时插入的占位也回滚
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (status != STATUS_COMMITTED) {
+                            midUserShares.remove(key);
+                        }
+                    }
+                });
+            }
+            return 1;
+        });
+
+        when(this.userCenterFeignClient.addBonusBatch(anyList())).thenAnswer(invocation -> {
+            List<UserAddBonusItemDTO> items = invocation.getArgument(0);
+            this.addBonusCalls.incrementAndGet();
+            List<UserAddBonusResultDTO> results = items.stream()
+                    .map(this::applyBonus)
+                    .collect(Collectors.toList());
+            // 已经处理，响应丢失(读超时)
+            if (this.lostResponses.getAndDecrement() > 0) {
+                throw new IllegalStateException("Read timed out");
+            }
+            return results;
+        });
+
+        // 幂等键没有在其他实例用过
+        when(this.midUserShareMapper.selectShareIdByIdempotencyKey(any(), any())).thenReturn(null);
+        this.shareExchangeIdempotency = new ShareExchangeIdempotency(
+                this.midUserShareMapper, new ShareExchangeProperties(), new SimpleMeterRegistry()
+        );
+    }
+
+    @Test
+    void concurrentExchangeChargesOnce() throws Exception {
+        this.bonus.set(100);
+
+        List<Future<Share>> futures = this.hammer(64, i -> this.shareService.exchangeById(SHARE_ID, null, request()));
+
+        for (Future<Share> future : futures) {
+            assertEquals(SHARE_ID, (int) future.get().getId());
+        }
+        assertEquals(1, this.midUserShares.size());
+        assertEquals(1, this.addBonusCalls.get());
+        assertEquals(100 - PRICE, this.bonus.get());
+        assertTrue(this.minBonus.get() >= 0);
+    }
+
+    @Test
+    void concurrentExchangeWithSameIdempotencyKeyChargesOnce() throws Exception {
+        this.bonus.set(100);
+
+        List<Future<Share>> futures = this.hammer(64, i -> this.shareExchangeIdempotency.execute(
+                USER_ID, SHARE_ID, "same-key", () -> this.shareService.exchangeById(SHARE_ID, "same-key", request())
+        ));
+
+        for (Future<Share> future : futures) {
+            assertEquals(SHARE_ID, (int) future.get().getId());
+        }
+        assertEquals(1, this.addBonusCalls.get());
+        assertEquals(100 - PRICE, this.bonus.get());
+    }
+
+    @Test
+    void insufficientBonusIsNotDeducted() {
+        this.bonus.set(PRICE - 1);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new InMemoryTransactionManager());
+
+        // 和 @Transactional 一样在事务中执行，异常时回滚
+        assertThrows(IllegalArgumentException.class, () -> transactionTemplate.execute(
+                status -> this.shareService.exchangeById(SHARE_ID, null, request())));
+
+        // 用户中心判断积分不够，整项不生效，积分没有变成负数；占位随事务回滚，没有记为已兑换
+        assertEquals(1, this.addBonusCalls.get());
+        assertEquals(PRICE - 1, this.bonus.get());
+        assertTrue(this.midUserShares.isEmpty());
+        verify(this.purchasedShareCache, never()).markPurchased(USER_ID, SHARE_ID);
+        verify(this.shareBuyCountWriter, never()).increment(SHARE_ID);
+    }
+
+    @Test
+    void lostResponseIsRetriedWithSameRequestId() {
+        this.bonus.set(100);
+        this.lostResponses.set(1);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new InMemoryTransactionManager());
+
+        transactionTemplate.execute(status -> this.shareService.exchangeById(SHARE_ID, null, request()));
+
+        // 第一次已经扣减但响应丢失，重试时用户中心按 requestId 去重
+        assertEquals(2, this.addBonusCalls.get());
+        assertEquals(100 - PRICE, this.bonus.get());
+        assertEquals(1, this.midUserShares.size());
+    }
+
+    @Test
+    void unknownDeductionIsCancelledBeforeRollback() {
+        this.bonus.set(100);
+        this.lostResponses.set(3);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new InMemoryTransactionManager());
+
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.execute(
+                status -> this.shareService.exchangeById(SHARE_ID, null, request())));
+
+        // 3 次扣减结果都未知，按 requestId 撤销后回滚占位，积分没有丢
+        assertEquals(4, this.addBonusCalls.get());
+        assertEquals(100, this.bonus.get());
+        assertTrue(this.midUserShares.isEmpty());
+    }
+
+    @Test
+    void idempotencyKeyUsedOnAnotherInstanceIsChecked() {
+        when(this.midUserShareMapper.selectShareIdByIdempotencyKey(USER_ID, "key-1")).thenReturn(SHARE_ID + 1);
+
+        // 本实例内存中没有这个幂等键
+        assertThrows(IllegalArgumentException.class, () -> this.shareExchangeIdempotency.execute(
+                USER_ID, SHARE_ID, "key-1", () -> this.shareService.exchangeById(SHARE_ID, "key-1", request())));
+        assertEquals(0, this.addBonusCalls.get());
+    }
+
+    @Test
+    void exchangeInTransactionIsRecordedAfterCommit() {
+        this.bonus.set(100);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new InMemoryTransactionManager());
+
+        transactionTemplate.execute(status -> this.shareService.exchangeById(SHARE_ID, null, request()));
+
+        assertEquals(Collections.singleton(USER_ID + ":" + SHARE_ID), this.midUserShares);
+        assertEquals(100 - PRICE, this.bonus.get());
+        verify(this.purchasedShareCache).markPurchased(USER_ID, SHARE_ID);
+        verify(this.shareBuyCountWriter).increment(SHARE_ID);
+    }
+
+    /**
+     * 模拟用户中心：按 requestId 去重，积分不够时不生效，撤销只退回生效过的扣减
+     */
+    private synchronized UserAddBonusResultDTO applyBonus(UserAddBonusItemDTO item) {
+        UserAddBonusResultDTO result = this.bonusResults.get(item.getRequestId());
+        if (result != null) {
+            return result;
+        }
+        boolean success;
+        if (item.getCancelRequestId() != null) {
+            UserAddBonusResultDTO cancelled = this.bonusResults.putIfAbsent(item.getCancelRequestId(),
+                    UserAddBonusResultDTO.builder().requestId(item.getCancelRequestId()).success(false).build());
+            if (cancelled != null && Boolean.TRUE.equals(cancelled.getSuccess())) {
+                this.bonus.addAndGet(item.getBonus());
+            }
+            success = true;
+        } else {
+            success = this.bonus.get() + item.getBonus() >= 0;
+            if (success) {
+                this.minBonus.set(Math.min(this.minBonus.get(), this.bonus.addAndGet(item.getBonus())));
+            }
+        }
+        result = UserAddBonusResultDTO.builder()
+                .requestId(item.getRequestId())
+                .userId(item.getUserId())
+                .bonus(this.bonus.get())
+                .success(success)
+                .build();
+        this.bonusResults.put(item.getRequestId(), result);
+        return result;
+    }
+
+    private List<Future<Share>> hammer(int threads, Exchange exchange) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Share>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int index = i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                return exchange.run(index);
+            }));
+        }
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+        return futures;
+    }
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute("id", USER_ID);
+        return request;
+    }
+
+    private interface Exchange {
+        Share run(int index);
+    }
+
+    /**
+     * 只管理事务同步的事务管理器，提交和回滚时触发 afterCommit / afterCompletion
+     */
+    private static class InMemoryTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+
+}
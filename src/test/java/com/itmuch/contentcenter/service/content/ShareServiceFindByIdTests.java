@@ -0,0 +1,48 @@
+package com.itmuch.contentcenter.service.content;
+
+import com.itmuch.contentcenter.dao.content.ShareMapper;
+import com.itmuch.contentcenter.domain.dto.content.ShareDTO;
+import com.itmuch.contentcenter.domain.entity.content.Share;
+import com.itmuch.contentcenter.feignclient.batch.UserCenterBatchLoader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+/**
+ * 分享详情组装测试
+ */
+class ShareServiceFindByIdTests {
+
+    @Mock
+    private ShareMapper shareMapper;
+
+    @Mock
+    private UserCenterBatchLoader userCenterBatchLoader;
+
+    @InjectMocks
+    private ShareService shareService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    void missingAuthorHasEmptyNickname() {
+        when(this.shareMapper.selectByPrimaryKey(1)).thenReturn(
+                Share.builder().id(1).userId(404).title("作者已注销").build());
+        // 不存在的用户，合并器返回 null
+        when(this.userCenterBatchLoader.load(404)).thenReturn(null);
+
+        ShareDTO shareDTO = this.shareService.findByIdByFeign(1);
+
+        assertEquals("作者已注销", shareDTO.getTitle());
+        assertEquals("", shareDTO.getWxNickname());
+    }
+
+}
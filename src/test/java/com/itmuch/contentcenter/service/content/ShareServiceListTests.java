@@ -0,0 +1,127 @@
+package com.itmuch.contentcenter.service.content;
+
+import com.github.pagehelper.PageHelper;
+import com.github.pagehelper.PageInfo;
+import com.itmuch.contentcenter.cache.ShareCountCache;
+import com.itmuch.contentcenter.dao.content.MidUserShareMapper;
+import com.itmuch.contentcenter.dao.content.ShareMapper;
+import com.itmuch.contentcenter.domain.dto.content.ShareListItemDTO;
+import com.itmuch.contentcenter.domain.entity.content.Share;
+import com.itmuch.contentcenter.search.ShareTitleIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 分页列表查询次数测试
+ *  不管一页多少条，已兑换判断都只发一次集合查询，downloadUrl 也只查一次
+ */
+class ShareServiceListTests {
+
+    private static final int USER_ID = 1;
+
+    @Mock
+    private ShareMapper shareMapper;
+
+    @Mock
+    private MidUserShareMapper midUserShareMapper;
+
+    @Mock
+    private ShareCountCache shareCountCache;
+
+    @Mock
+    private ShareTitleIndex shareTitleIndex;
+
+    @InjectMocks
+    private ShareService shareService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @AfterEach
+    void tearDown() {
+        PageHelper.clearPage();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {10, 50, 100})
+    void onePurchasedQueryPerPage(int pageSize) {
+        List<ShareListItemDTO> items = IntStream.rangeClosed(1, pageSize)
+                .mapToObj(id -> ShareListItemDTO.builder().id(id).build())
+                .collect(Collectors.toList());
+        when(this.shareMapper.selectListItemsByParam(any())).thenReturn(items);
+        when(this.shareCountCache.count(any())).thenReturn((long) pageSize);
+        // 1 和偶数 id 已兑换，可能是其他实例兑换的
+        when(this.midUserShareMapper.selectPurchasedShareIds(eq(USER_ID), anyCollection()))
+                .thenAnswer(invocation -> {
+                    Collection<Integer> shareIds = invocation.getArgument(1);
+                    return shareIds.stream()
+                            .filter(id -> id == 1 || id % 2 == 0)
+                            .collect(Collectors.toList());
+                });
+        when(this.shareMapper.selectDownloadUrlsByIds(anyCollection()))
+                .thenAnswer(invocation -> {
+                    Collection<Integer> shareIds = invocation.getArgument(0);
+                    List<Share> shares = new ArrayList<>();
+                    shareIds.forEach(id -> shares.add(Share.builder().id(id).downloadUrl("url-" + id).build()));
+                    return shares;
+                });
+
+        PageInfo<ShareListItemDTO> pageInfo = this.shareService.q(null, 1, pageSize, USER_ID);
+
+        verify(this.midUserShareMapper, never()).selectShareIdsByUserId(any());
+        verify(this.midUserShareMapper, times(1)).selectPurchasedShareIds(eq(USER_ID), anyCollection());
+        verify(this.shareMapper, times(1)).selectDownloadUrlsByIds(anyCollection());
+
+        List<ShareListItemDTO> list = pageInfo.getList();
+        assertEquals(pageSize, list.size());
+        assertEquals("url-1", list.get(0).getDownloadUrl());
+        assertEquals("url-2", list.get(1).getDownloadUrl());
+        assertNull(list.get(2).getDownloadUrl());
+    }
+
+    @Test
+    void listAndCountUseSameNormalizedTitle() {
+        when(this.shareMapper.selectListItemsByParam(any())).thenReturn(new ArrayList<>());
+
+        this.shareService.q("  java ", 1, 10, null);
+
+        verify(this.shareMapper).selectListItemsByParam("java");
+        verify(this.shareCountCache).count("java");
+    }
+
+    @Test
+    void likeWildcardsMatchLiterally() {
+        when(this.shareMapper.selectListItemsByParam(any())).thenReturn(new ArrayList<>());
+
+        // 和标题索引一样按普通字符匹配，大小写也一样规范化
+        this.shareService.q(" 50%_OFF ", 1, 10, null);
+
+        verify(this.shareMapper).selectListItemsByParam("50\\%\\_off");
+        verify(this.shareCountCache).count("50\\%\\_off");
+    }
+
+}